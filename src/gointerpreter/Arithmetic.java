@@ -0,0 +1,136 @@
+package gointerpreter;
+
+// number semantics shared by the tree-walker and the vm
+// integers are Long values with Go's int64 wraparound and truncating division, floats are Double values
+// mixing the two promotes the integer operand to float64, the way an untyped constant would be converted
+final class Arithmetic {
+    private static final int CACHE_LOW = -1024;
+    private static final int CACHE_HIGH = 65536;
+    private static final Long[] cache = new Long[CACHE_HIGH - CACHE_LOW];
+
+    private Arithmetic() {}
+
+    // boxes an integer result, loop counters and small accumulators reuse cached objects instead of allocating
+    static Long box(long value) {
+        if (value >= CACHE_LOW && value < CACHE_HIGH) {
+            int index = (int) value - CACHE_LOW;
+            Long boxed = cache[index];
+            if (boxed == null) {
+                boxed = value;
+                cache[index] = boxed;
+            }
+            return boxed;
+        }
+        return value;
+    }
+
+    static boolean isNumber(Object value) {
+        return value instanceof Long || value instanceof Double;
+    }
+
+    static Object add(Object left, Object right, int line) {
+        if (left instanceof Long && right instanceof Long) {
+            return box((long) left + (long) right);
+        }
+        if (isNumber(left) && isNumber(right)) {
+            return toDouble(left) + toDouble(right);
+        }
+        if (Rope.isString(left) && Rope.isString(right)) {
+            return Rope.concat((CharSequence) left, (CharSequence) right);
+        }
+        throw new RuntimeError(line, "Operands must be two numbers or two strings.");
+    }
+
+    static Object subtract(Object left, Object right, int line) {
+        if (left instanceof Long && right instanceof Long) {
+            return box((long) left - (long) right);
+        }
+        checkNumberOperands(left, right, line);
+        return toDouble(left) - toDouble(right);
+    }
+
+    static Object multiply(Object left, Object right, int line) {
+        if (left instanceof Long && right instanceof Long) {
+            return box((long) left * (long) right);
+        }
+        checkNumberOperands(left, right, line);
+        return toDouble(left) * toDouble(right);
+    }
+
+    static Object divide(Object left, Object right, int line) {
+        if (left instanceof Long && right instanceof Long) {
+            long divisor = (long) right;
+            if (divisor == 0) throw new RuntimeError(line, "Cannot divide by zero.");
+            return box((long) left / divisor);
+        }
+        checkNumberOperands(left, right, line);
+        double divisor = toDouble(right);
+        if (divisor == 0) throw new RuntimeError(line, "Cannot divide by zero.");
+        return toDouble(left) / divisor;
+    }
+
+    static Object modulo(Object left, Object right, int line) {
+        if (left instanceof Long && right instanceof Long) {
+            long divisor = (long) right;
+            if (divisor == 0) throw new RuntimeError(line, "Cannot divide by zero.");
+            return box((long) left % divisor);
+        }
+        throw new RuntimeError(line, "Operands must be integers.");
+    }
+
+    static Object negate(Object operand, int line) {
+        if (operand instanceof Long) return box(-(long) operand);
+        if (operand instanceof Double) return -(double) operand;
+        throw new RuntimeError(line, "Operand must be a number.");
+    }
+
+    static boolean greater(Object left, Object right, int line) {
+        if (left instanceof Long && right instanceof Long) {
+            return (long) left > (long) right;
+        }
+        checkNumberOperands(left, right, line);
+        return toDouble(left) > toDouble(right);
+    }
+
+    static boolean greaterEqual(Object left, Object right, int line) {
+        if (left instanceof Long && right instanceof Long) {
+            return (long) left >= (long) right;
+        }
+        checkNumberOperands(left, right, line);
+        return toDouble(left) >= toDouble(right);
+    }
+
+    static boolean less(Object left, Object right, int line) {
+        if (left instanceof Long && right instanceof Long) {
+            return (long) left < (long) right;
+        }
+        checkNumberOperands(left, right, line);
+        return toDouble(left) < toDouble(right);
+    }
+
+    static boolean lessEqual(Object left, Object right, int line) {
+        if (left instanceof Long && right instanceof Long) {
+            return (long) left <= (long) right;
+        }
+        checkNumberOperands(left, right, line);
+        return toDouble(left) <= toDouble(right);
+    }
+
+    // numbers of different kinds are equal when their values are
+    static boolean numbersEqual(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            return (long) left == (long) right;
+        }
+        return toDouble(left) == toDouble(right);
+    }
+
+    static double toDouble(Object number) {
+        if (number instanceof Long) return (double) (long) number;
+        return (double) number;
+    }
+
+    private static void checkNumberOperands(Object left, Object right, int line) {
+        if (isNumber(left) && isNumber(right)) return;
+        throw new RuntimeError(line, "Operands must be numbers.");
+    }
+}
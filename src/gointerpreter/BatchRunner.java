@@ -0,0 +1,109 @@
+package gointerpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// runs every script of a directory in one JVM, as many at a time as there are processors
+// each script gets its own Main, so its own engine, error state and output, which is kept in memory and
+// printed under the script's name once the scripts before it are printed, so the output does not depend
+// on which script finishes first
+class BatchRunner {
+    private final Path directory;
+    private final int threads = Runtime.getRuntime().availableProcessors();
+
+    // what one script printed and its exit status
+    private static class Result {
+        final String name;
+        final byte[] out;
+        final byte[] err;
+        final int status;
+
+        Result(String name, byte[] out, byte[] err, int status) {
+            this.name = name;
+            this.out = out;
+            this.err = err;
+            this.status = status;
+        }
+    }
+
+    BatchRunner(Path directory) {
+        this.directory = directory;
+    }
+
+    // returns the highest exit status of the scripts
+    int run() {
+        File[] files = directory.toFile().listFiles(File::isFile);
+        if (files == null) {
+            System.err.println("Cannot read directory " + directory);
+            return 66;
+        }
+        Arrays.sort(files);
+        long start = System.nanoTime();
+        // scripts get stacks of the --stack size, as when they run on their own
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(null, runnable, "batch", Main.stackSize));
+        List<Future<Result>> results = new ArrayList<>();
+        for (File file : files) {
+            results.add(pool.submit(() -> run(file.toPath())));
+        }
+        pool.shutdown();
+        int status = 0;
+        int failed = 0;
+        for (Future<Result> future : results) {
+            Result result = await(future);
+            System.out.println("== " + result.name + " ==");
+            System.out.write(result.out, 0, result.out.length);
+            System.out.flush();
+            System.err.write(result.err, 0, result.err.length);
+            System.err.flush();
+            if (result.status != 0) failed++;
+            status = Math.max(status, result.status);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d scripts, %d failed, %.2f s, %.1f scripts/s on %d threads%n",
+                files.length, failed, seconds, files.length / seconds, threads);
+        return status;
+    }
+
+    private static Result run(Path script) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream errStream = new PrintStream(err, true);
+        int status;
+        Main main = new Main(new PrintStream(out, true), errStream);
+        try {
+            status = main.runFile(script);
+        } catch (StackOverflowError error) {
+            status = main.stackOverflow();
+        } catch (IOException error) {
+            errStream.println("Cannot read " + script + ": " + error.getMessage());
+            status = 74;
+        } catch (RuntimeException error) {
+            // one broken script must not take the others down with it
+            errStream.println("Internal error: " + error);
+            status = 70;
+        }
+        return new Result(script.getFileName().toString(), out.toByteArray(), err.toByteArray(), status);
+    }
+
+    private static Result await(Future<Result> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(error);
+        } catch (ExecutionException error) {
+            throw new IllegalStateException(error.getCause());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package gointerpreter;
+
+import java.util.List;
+
+// a function every program can call without declaring it, both engines define them in their globals
+abstract class Builtin implements Callable {
+    // the arity of a builtin that checks its number of arguments itself
+    static final int VARIADIC = -1;
+
+    final String name;
+    private final int arity;
+
+    private Builtin(String name, int arity) {
+        this.name = name;
+        this.arity = arity;
+    }
+
+    static void define(Environment globals) {
+        globals.define("close", new Builtin("close", 1) {
+            Object call(List<Object> arguments, int line) {
+                Object channel = arguments.get(0);
+                if (!(channel instanceof Channel)) throw new RuntimeError(line, "Argument must be a channel.");
+                ((Channel) channel).close(line);
+                return null;
+            }
+        });
+        globals.define("len", new Builtin("len", 1) {
+            Object call(List<Object> arguments, int line) {
+                Object value = arguments.get(0);
+                if (value instanceof Slice) return Arithmetic.box(((Slice) value).length);
+                if (value instanceof GoMap) return Arithmetic.box(((GoMap) value).size());
+                if (value instanceof Channel) return Arithmetic.box(((Channel) value).size());
+                if (Rope.isString(value)) return Arithmetic.box(utf8Length(value.toString()));
+                throw new RuntimeError(line, "Invalid argument for len.");
+            }
+        });
+        globals.define("cap", new Builtin("cap", 1) {
+            Object call(List<Object> arguments, int line) {
+                Object value = arguments.get(0);
+                if (value instanceof Slice) return Arithmetic.box(((Slice) value).capacity);
+                if (value instanceof Channel) return Arithmetic.box(((Channel) value).capacity());
+                throw new RuntimeError(line, "Invalid argument for cap.");
+            }
+        });
+        globals.define("append", new Builtin("append", VARIADIC) {
+            Object call(List<Object> arguments, int line) {
+                if (arguments.isEmpty()) throw new RuntimeError(line, "Expected at least 1 arguments but got 0.");
+                return Slice.cast(arguments.get(0), line).append(arguments, 1, line);
+            }
+        });
+        globals.define("delete", new Builtin("delete", 2) {
+            Object call(List<Object> arguments, int line) {
+                GoMap.cast(arguments.get(0), line).delete(arguments.get(1), line);
+                return null;
+            }
+        });
+    }
+
+    // len of a string is its length in bytes, as Go strings are UTF-8
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    // line is the line of the call, for errors
+    abstract Object call(List<Object> arguments, int line);
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return call(arguments, 0);
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public String toString() {
+        return "<builtin " + name + ">";
+    }
+}
@@ -0,0 +1,301 @@
+package gointerpreter;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+// a Go channel: a ring buffer of capacity values plus the queues of goroutines blocked sending and receiving
+// a value goes straight from a sender to a waiting receiver, or the other way round, without passing
+// through the buffer, so an unbuffered channel is only a rendezvous
+// the lock is a ReentrantLock rather than a monitor so a virtual thread waiting for it does not pin its carrier
+final class Channel {
+    // what a receive case passes to select in place of a value to send
+    static final Object RECEIVE = new Object();
+    // what receiveOrClosed and a select receive case give once the channel is closed and drained
+    static final Object CLOSED = new Object();
+
+    private static final AtomicLong ids = new AtomicLong();
+    // select locks its channels in this order, so two selects never wait for each other's locks
+    private final long id = ids.incrementAndGet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Object[] buffer;
+    // the zero value of the element type, what a receive gives once the channel is closed and drained
+    private final Object zero;
+    private int head = 0;
+    private int count = 0;
+    private boolean closed = false;
+    private final ArrayDeque<Entry> senders = new ArrayDeque<>();
+    private final ArrayDeque<Entry> receivers = new ArrayDeque<>();
+
+    // a blocked goroutine: a single send or receive, or a select waiting on several channels at once
+    // whoever claims it first completes it, the entries it left on other channels are then skipped
+    private static final class Waiter {
+        private final Thread thread = Thread.currentThread();
+        private final Goroutines goroutines;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private volatile boolean done = false;
+        // written by the goroutine that completes this waiter, before done is set
+        int selected;
+        Object value;
+        boolean closed;
+
+        Waiter(Goroutines goroutines) {
+            this.goroutines = goroutines;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void complete(int selected, Object value, boolean closed) {
+            this.selected = selected;
+            this.value = value;
+            this.closed = closed;
+            goroutines.unblocked();
+            done = true;
+            LockSupport.unpark(thread);
+        }
+
+        void await(int line) {
+            while (!done) {
+                if (goroutines.deadlocked() && claim()) {
+                    goroutines.unblocked();
+                    throw new RuntimeError(line, "All goroutines are asleep - deadlock!");
+                }
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    // a waiter's place in one channel's queue, index is the select case it stands for
+    private static final class Entry {
+        final Waiter waiter;
+        final int index;
+        final Object value;
+
+        Entry(Waiter waiter, int index, Object value) {
+            this.waiter = waiter;
+            this.index = index;
+            this.value = value;
+        }
+    }
+
+    Channel(int capacity, Object zero) {
+        buffer = new Object[capacity];
+        this.zero = zero;
+    }
+
+    void send(Object value, Goroutines goroutines, int line) {
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (trySend(value, line)) return;
+            waiter = new Waiter(goroutines);
+            senders.add(new Entry(waiter, 0, value));
+            goroutines.blocked();
+        } finally {
+            lock.unlock();
+        }
+        waiter.await(line);
+        if (waiter.closed) throw new RuntimeError(line, "Send on closed channel.");
+    }
+
+    // a closed channel gives the zero value once its buffer is drained
+    Object receive(Goroutines goroutines, int line) {
+        return valueOf(receiveOrClosed(goroutines, line));
+    }
+
+    // what receiveOrClosed or a select case received, as the value a receive gives
+    Object valueOf(Object received) {
+        return received == CLOSED ? zero : received;
+    }
+
+    // like receive, but gives CLOSED in place of the zero value of a closed channel, for comma-ok receives and range
+    Object receiveOrClosed(Goroutines goroutines, int line) {
+        Waiter waiter;
+        lock.lock();
+        try {
+            Object value = tryReceive();
+            if (value != RECEIVE) return value;
+            waiter = new Waiter(goroutines);
+            receivers.add(new Entry(waiter, 0, RECEIVE));
+            goroutines.blocked();
+        } finally {
+            lock.unlock();
+        }
+        waiter.await(line);
+        return waiter.closed ? CLOSED : waiter.value;
+    }
+
+    void close(int line) {
+        lock.lock();
+        try {
+            if (closed) throw new RuntimeError(line, "Close of closed channel.");
+            closed = true;
+            for (Entry entry; (entry = poll(receivers)) != null; ) {
+                entry.waiter.complete(entry.index, null, true);
+            }
+            for (Entry entry; (entry = poll(senders)) != null; ) {
+                entry.waiter.complete(entry.index, null, true);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    // waits for the first of the cases that can proceed, values[i] is what case i sends or RECEIVE
+    // a null channel, nil or the default case, never proceeds
+    // returns the case that ran, whose entry in values is replaced by what it received, CLOSED when the channel
+    // was closed, or -1 for default
+    static int select(Channel[] channels, Object[] values, boolean hasDefault, Goroutines goroutines, int line) {
+        Channel[] locked = lockOrder(channels);
+        Waiter waiter;
+        try {
+            lockAll(locked);
+            // cases are tried from a random one on, so no ready case is starved
+            int start = channels.length == 0 ? 0 : ThreadLocalRandom.current().nextInt(channels.length);
+            for (int i = 0; i < channels.length; i++) {
+                int index = (start + i) % channels.length;
+                Channel channel = channels[index];
+                if (channel == null) continue;
+                if (values[index] == RECEIVE) {
+                    Object value = channel.tryReceive();
+                    if (value != RECEIVE) {
+                        values[index] = value;
+                        return index;
+                    }
+                } else if (channel.trySend(values[index], line)) {
+                    return index;
+                }
+            }
+            if (hasDefault) return -1;
+            waiter = new Waiter(goroutines);
+            for (int i = 0; i < channels.length; i++) {
+                Channel channel = channels[i];
+                if (channel == null) continue;
+                if (values[i] == RECEIVE) {
+                    channel.receivers.add(new Entry(waiter, i, RECEIVE));
+                } else {
+                    channel.senders.add(new Entry(waiter, i, values[i]));
+                }
+            }
+            goroutines.blocked();
+        } finally {
+            unlockAll(locked);
+        }
+        try {
+            waiter.await(line);
+        } finally {
+            // the entries on the channels that did not fire would otherwise pile up in loops
+            for (Channel channel : locked) {
+                channel.lock.lock();
+                try {
+                    channel.senders.removeIf(entry -> entry.waiter == waiter);
+                    channel.receivers.removeIf(entry -> entry.waiter == waiter);
+                } finally {
+                    channel.lock.unlock();
+                }
+            }
+        }
+        int index = waiter.selected;
+        if (values[index] == RECEIVE) {
+            values[index] = waiter.closed ? CLOSED : waiter.value;
+        } else if (waiter.closed) {
+            throw new RuntimeError(line, "Send on closed channel.");
+        }
+        return index;
+    }
+
+    // blocks for good, what a send or receive on a nil channel does
+    static void block(Goroutines goroutines, int line) {
+        select(new Channel[0], new Object[0], false, goroutines, line);
+    }
+
+    private boolean trySend(Object value, int line) {
+        if (closed) throw new RuntimeError(line, "Send on closed channel.");
+        Entry receiver = poll(receivers);
+        if (receiver != null) {
+            receiver.waiter.complete(receiver.index, value, false);
+            return true;
+        }
+        if (count < buffer.length) {
+            buffer[(head + count) % buffer.length] = value;
+            count++;
+            return true;
+        }
+        return false;
+    }
+
+    // RECEIVE when the receive would have to wait, CLOSED when the channel is closed and drained
+    private Object tryReceive() {
+        if (count > 0) {
+            Object value = buffer[head];
+            buffer[head] = null;
+            head = (head + 1) % buffer.length;
+            count--;
+            // the buffer has room again, the longest waiting sender moves its value in
+            Entry sender = poll(senders);
+            if (sender != null) {
+                buffer[(head + count) % buffer.length] = sender.value;
+                count++;
+                sender.waiter.complete(sender.index, null, false);
+            }
+            return value;
+        }
+        Entry sender = poll(senders);
+        if (sender != null) {
+            sender.waiter.complete(sender.index, null, false);
+            return sender.value;
+        }
+        if (closed) return CLOSED;
+        return RECEIVE;
+    }
+
+    // the first entry whose waiter is still waiting, entries of selects that went another way are dropped
+    private static Entry poll(ArrayDeque<Entry> queue) {
+        for (Entry entry; (entry = queue.poll()) != null; ) {
+            if (entry.waiter.claim()) return entry;
+        }
+        return null;
+    }
+
+    // the distinct channels of a select, sorted by id
+    private static Channel[] lockOrder(Channel[] channels) {
+        return java.util.Arrays.stream(channels)
+                .filter(channel -> channel != null)
+                .distinct()
+                .sorted((a, b) -> Long.compare(a.id, b.id))
+                .toArray(Channel[]::new);
+    }
+
+    private static void lockAll(Channel[] channels) {
+        for (Channel channel : channels) channel.lock.lock();
+    }
+
+    private static void unlockAll(Channel[] channels) {
+        for (Channel channel : channels) {
+            if (channel.lock.isHeldByCurrentThread()) channel.lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "0x" + Integer.toHexString(System.identityHashCode(this));
+    }
+}
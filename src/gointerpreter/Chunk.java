@@ -0,0 +1,66 @@
+package gointerpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// a compiled function body: the bytecode, the line of every byte and the constant pool it indexes into
+class Chunk {
+    final Statement.Function declaration;
+    final boolean isInitializer;
+    byte[] code = new byte[64];
+    int[] lines = new int[64];
+    int count = 0;
+    Object[] constants;
+
+    private final List<Object> pool = new ArrayList<>();
+    private final Map<Object, Integer> poolIndex = new HashMap<>();
+
+    // declaration is null for the top level script
+    Chunk(Statement.Function declaration, boolean isInitializer) {
+        this.declaration = declaration;
+        this.isInitializer = isInitializer;
+    }
+
+    void write(int value, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = (byte) value;
+        lines[count] = line;
+        count++;
+    }
+
+    void writeShort(int value, int line) {
+        write((value >> 8) & 0xff, line);
+        write(value & 0xff, line);
+    }
+
+    // strings and numbers are shared between uses, nested chunks always get their own slot
+    int addConstant(Object value) {
+        if (value instanceof Chunk) {
+            pool.add(value);
+            return pool.size() - 1;
+        }
+        Integer index = poolIndex.get(value);
+        if (index != null) return index;
+        pool.add(value);
+        poolIndex.put(value, pool.size() - 1);
+        return pool.size() - 1;
+    }
+
+    int constantCount() {
+        return pool.size();
+    }
+
+    // trims the buffers and freezes the constant pool once the compiler is done with this chunk
+    void finish() {
+        code = Arrays.copyOf(code, count);
+        lines = Arrays.copyOf(lines, count);
+        constants = pool.toArray();
+        poolIndex.clear();
+    }
+}
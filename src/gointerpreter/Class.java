@@ -1,29 +1,38 @@
 package gointerpreter;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 class Class implements Callable {
     final String name;
     final Class superclass;
+    // flattened method table: inherited methods are copied in when the class is created and overridden by
+    // its own, so a lookup is one probe however deep the hierarchy is
     private final Map<String, Function> methods;
+    // instances start at this shape, see Shape
+    final Shape rootShape = new Shape();
+    // the most fields an instance has grown to, new instances allocate that many up front
+    // it is only a sizing hint, so racing updates are harmless
+    int fieldCount = 0;
 
     Class(String name, Class superclass, Map<String, Function> methods) {
         this.name = name;
         this.superclass = superclass;
-        this.methods = methods;
+        Map<String, Function> table = new HashMap<>();
+        if (superclass != null) table.putAll(superclass.methods);
+        table.putAll(methods);
+        this.methods = Map.copyOf(table);
     }
 
-    Function findMethod(Instance instance, String name) {
-        if (methods.containsKey(name)) {
-            return methods.get(name).bind(instance);
-        }
-
-        if (superclass != null) {
-            return superclass.findMethod(instance, name);
-        }
+    Function findMethod(String name) {
+        return methods.get(name);
+    }
 
-        return null;
+    Function findMethod(Instance instance, String name) {
+        Function method = methods.get(name);
+        if (method == null) return null;
+        return method.bind(instance);
     }
 
     @Override
@@ -35,9 +44,9 @@ class Class implements Callable {
     public Object call(Interpreter interpreter, List<Object> arguments) {
         Instance instance = new Instance(this);
 
-        Function initializer = methods.get("init");
+        Function initializer = findMethod("init");
         if (initializer != null) {
-            initializer.bind(instance).call(interpreter, arguments);
+            initializer.invoke(interpreter, instance, arguments);
         }
 
         return instance;
@@ -45,7 +54,7 @@ class Class implements Callable {
 
     @Override
     public int arity() {
-        Function initializer = methods.get("init");
+        Function initializer = findMethod("init");
         if (initializer == null) return 0;
         return initializer.arity();
     }
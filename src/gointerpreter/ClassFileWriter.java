@@ -0,0 +1,385 @@
+package gointerpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// writes the class files the jit defines, just what JitCompiler needs: a constant pool, fields and methods
+// whose code is assembled through Code, which resolves jumps and counts the stack and the locals
+// the classes are version 49, which the JVM verifies by type inference, so no stack map frames are needed
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    // the opcodes used by the jit, as the JVM specification numbers them
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int ISTORE = 0x36;
+    static final int ASTORE = 0x3a;
+    static final int AALOAD = 0x32;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int DUP_X2 = 0x5b;
+    static final int IXOR = 0x82;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IF_ICMPEQ = 0x9f;
+    static final int IF_ICMPNE = 0xa0;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int NEW = 0xbb;
+    static final int ANEWARRAY = 0xbd;
+    static final int CHECKCAST = 0xc0;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolData = new DataOutputStream(pool);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<Code> methods = new ArrayList<>();
+
+    ClassFileWriter(String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Constant pool
+    //////////////////////////////////////////////////////////
+
+    // adds an entry unless an equal one is in the pool, key tells entries apart
+    private int entry(String key, int tag, int first, int second, String text) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+        try {
+            poolData.writeByte(tag);
+            if (text != null) {
+                poolData.writeUTF(text);
+            } else {
+                poolData.writeShort(first);
+                if (second >= 0) poolData.writeShort(second);
+            }
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+        entries.put(key, poolCount);
+        return poolCount++;
+    }
+
+    int utf8(String text) {
+        return entry("U" + text, 1, 0, 0, text);
+    }
+
+    int classRef(String name) {
+        return entry("C" + name, 7, utf8(name), -1, null);
+    }
+
+    int string(String text) {
+        return entry("S" + text, 8, utf8(text), -1, null);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        return entry("N" + name + " " + descriptor, 12, utf8(name), utf8(descriptor), null);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return entry("F" + owner + "." + name + " " + descriptor, 9, classRef(owner), nameAndType(name, descriptor), null);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return entry("M" + owner + "." + name + descriptor, 10, classRef(owner), nameAndType(name, descriptor), null);
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Members
+    //////////////////////////////////////////////////////////
+
+    void field(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        try {
+            data.writeShort(access);
+            data.writeShort(utf8(name));
+            data.writeShort(utf8(descriptor));
+            data.writeShort(0);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    // an instance method, its parameters take the locals after 'this'
+    Code method(int access, String name, String descriptor) {
+        Code code = new Code(access, utf8(name), utf8(descriptor), 1 + slots(descriptor));
+        methods.add(code);
+        return code;
+    }
+
+    byte[] toByteArray() {
+        int codeAttribute = utf8("Code");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        try {
+            data.writeInt(0xCAFEBABE);
+            data.writeShort(0);
+            data.writeShort(49);
+            data.writeShort(poolCount);
+            pool.writeTo(data);
+            data.writeShort(ACC_FINAL | ACC_SUPER);
+            data.writeShort(thisClass);
+            data.writeShort(superClass);
+            data.writeShort(interfaces.length);
+            for (int index : interfaces) {
+                data.writeShort(index);
+            }
+            data.writeShort(fields.size());
+            for (byte[] field : fields) {
+                data.write(field);
+            }
+            data.writeShort(methods.size());
+            for (Code method : methods) {
+                method.write(data, codeAttribute);
+            }
+            data.writeShort(0);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+        return bytes.toByteArray();
+    }
+
+    // the local variable slots the parameters of a method descriptor take, longs and doubles take two
+    private static int slots(String descriptor) {
+        int slots = 0;
+        for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+            char type = descriptor.charAt(i);
+            boolean array = type == '[';
+            while (type == '[') type = descriptor.charAt(++i);
+            if (type == 'L') i = descriptor.indexOf(';', i);
+            slots += !array && (type == 'J' || type == 'D') ? 2 : 1;
+        }
+        return slots;
+    }
+
+    // what a call to a method of the descriptor does to the stack, without the receiver
+    private static int effect(String descriptor) {
+        char result = descriptor.charAt(descriptor.indexOf(')') + 1);
+        int pushed = result == 'V' ? 0 : result == 'J' || result == 'D' ? 2 : 1;
+        return pushed - slots(descriptor);
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Code
+    //////////////////////////////////////////////////////////
+
+    // a position in the code, jumps to it are patched once it is placed
+    static final class Label {
+        private int position = -1;
+        private final List<Integer> jumps = new ArrayList<>();
+        // the stack depth at the label, jumps and the code falling into it must agree on it
+        private int depth = -1;
+    }
+
+    final class Code {
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+        private int depth = 0;
+        private int maxDepth = 0;
+        private int locals;
+
+        private Code(int access, int name, int descriptor, int locals) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.locals = locals;
+        }
+
+        // a fresh local variable slot, slots are not reused so the verifier never sees one change type
+        int newLocal() {
+            if (locals > 255) throw new IllegalStateException("Too many locals in generated code.");
+            return locals++;
+        }
+
+        private void stack(int change) {
+            depth += change;
+            if (depth < 0) throw new IllegalStateException("Stack underflow in generated code.");
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        void op(int opcode, int change) {
+            code.write(opcode);
+            stack(change);
+        }
+
+        private void op(int opcode, int change, int operand) {
+            op(opcode, change);
+            code.write(operand >> 8);
+            code.write(operand);
+        }
+
+        void push(int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(BIPUSH, 1);
+                code.write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(SIPUSH, 1, value);
+            } else {
+                throw new IllegalStateException("Constant " + value + " too large for generated code.");
+            }
+        }
+
+        void ldc(int constant) {
+            op(LDC_W, 1, constant);
+        }
+
+        void aload(int local) {
+            op(ALOAD, 1);
+            code.write(local);
+        }
+
+        void astore(int local) {
+            op(ASTORE, -1);
+            code.write(local);
+        }
+
+        void iload(int local) {
+            op(ILOAD, 1);
+            code.write(local);
+        }
+
+        void istore(int local) {
+            op(ISTORE, -1);
+            code.write(local);
+        }
+
+        void getField(String owner, String name, String descriptor) {
+            op(GETFIELD, 0, fieldRef(owner, name, descriptor));
+        }
+
+        void putField(String owner, String name, String descriptor) {
+            op(PUTFIELD, -2, fieldRef(owner, name, descriptor));
+        }
+
+        void getStatic(String owner, String name, String descriptor) {
+            op(GETSTATIC, 1, fieldRef(owner, name, descriptor));
+        }
+
+        void invokeStatic(String owner, String name, String descriptor) {
+            op(INVOKESTATIC, effect(descriptor), methodRef(owner, name, descriptor));
+        }
+
+        void invokeVirtual(String owner, String name, String descriptor) {
+            op(INVOKEVIRTUAL, effect(descriptor) - 1, methodRef(owner, name, descriptor));
+        }
+
+        void invokeSpecial(String owner, String name, String descriptor) {
+            op(INVOKESPECIAL, effect(descriptor) - 1, methodRef(owner, name, descriptor));
+        }
+
+        void newObject(String type) {
+            op(NEW, 1, classRef(type));
+        }
+
+        void newArray(String elementType) {
+            op(ANEWARRAY, 0, classRef(elementType));
+        }
+
+        void checkCast(String type) {
+            op(CHECKCAST, 0, classRef(type));
+        }
+
+        // a conditional or unconditional jump, the operands it compares come off the stack first
+        void jump(int opcode, Label target) {
+            int popped = opcode == GOTO ? 0 : opcode >= IF_ICMPEQ ? 2 : 1;
+            int at = code.size();
+            op(opcode, -popped, 0);
+            target.jumps.add(at);
+            agree(target);
+            // nothing falls through a goto, the code after it is only reached through a label
+            if (opcode == GOTO) depth = -1;
+        }
+
+        void place(Label label) {
+            if (depth >= 0) agree(label);
+            // a label nothing jumps to after a goto starts dead code, which is only ever between statements
+            depth = Math.max(label.depth, 0);
+            label.position = code.size();
+        }
+
+        private void agree(Label label) {
+            if (label.depth < 0) {
+                label.depth = depth;
+            } else if (label.depth != depth) {
+                throw new IllegalStateException("Inconsistent stack depth in generated code.");
+            }
+        }
+
+        // whether the code after the last instruction can be reached
+        boolean isReachable() {
+            return depth >= 0;
+        }
+
+        private void write(DataOutputStream data, int codeAttribute) throws IOException {
+            byte[] bytes = code.toByteArray();
+            if (bytes.length >= 32768) throw new IllegalStateException("Generated code too large.");
+            for (Label label : labels) {
+                for (int at : label.jumps) {
+                    int offset = label.position - at;
+                    bytes[at + 1] = (byte) (offset >> 8);
+                    bytes[at + 2] = (byte) offset;
+                }
+            }
+            data.writeShort(access);
+            data.writeShort(name);
+            data.writeShort(descriptor);
+            data.writeShort(1);
+            data.writeShort(codeAttribute);
+            data.writeInt(12 + bytes.length);
+            data.writeShort(maxDepth);
+            data.writeShort(locals);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+            data.writeShort(0);
+            data.writeShort(0);
+        }
+
+        // a label to place later, or to place now and jump back to
+        Label label() {
+            Label label = new Label();
+            labels.add(label);
+            return label;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package gointerpreter;
+
+import java.util.List;
+
+// a function whose body has been compiled to bytecode, run by the vm instead of the tree-walker
+// the vm pushes a frame for it in its own dispatch loop, so it is never invoked from outside that loop
+class Closure extends Function {
+    final Chunk chunk;
+
+    Closure(Chunk chunk, Environment closure) {
+        this(chunk, closure, null);
+    }
+
+    private Closure(Chunk chunk, Environment closure, Instance receiver) {
+        super(chunk.declaration, closure, chunk.isInitializer, receiver);
+        this.chunk = chunk;
+    }
+
+    @Override
+    Closure bind(Instance instance) {
+        return new Closure(chunk, closure, instance);
+    }
+
+    @Override
+    Object invoke(Interpreter interpreter, Instance receiver, List<Object> arguments) {
+        throw new IllegalStateException("A closure is only called by the vm that runs it.");
+    }
+}
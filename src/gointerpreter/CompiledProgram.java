@@ -0,0 +1,44 @@
+package gointerpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import javax.script.ScriptException;
+
+// a resolved program, made by GoEngine.compile
+// the tree is never changed after resolution apart from its per-site caches, which are safe to share (see
+// Expression), so one program can execute on many threads at once
+// every execution gets an Interpreter of its own, with its own globals, error state and output
+public final class CompiledProgram {
+    private final List<Statement> statements;
+
+    CompiledProgram(List<Statement> statements) {
+        this.statements = List.copyOf(statements);
+    }
+
+    // runs the program with bindings defined as globals, printing to output
+    // Java integers become Go ints and floats become float64s, other values are passed through as they are
+    public void execute(Map<String, ?> bindings, PrintStream output) throws ScriptException {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        ErrorReporter reporter = new ErrorReporter(output, new PrintStream(errors, true));
+        Interpreter interpreter = new Interpreter(reporter, true);
+        for (Map.Entry<String, ?> binding : bindings.entrySet()) {
+            interpreter.globals.define(binding.getKey(), value(binding.getValue()));
+        }
+        try {
+            interpreter.interpret(statements);
+        } catch (StackOverflowError error) {
+            reporter.runtimeError(interpreter.stackOverflow());
+        }
+        if (reporter.hadRuntimeError) throw new ScriptException(errors.toString().trim());
+    }
+
+    private static Object value(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return Arithmetic.box(((Number) value).longValue());
+        }
+        if (value instanceof Float) return ((Float) value).doubleValue();
+        return value;
+    }
+}
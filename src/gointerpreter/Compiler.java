@@ -0,0 +1,765 @@
+package gointerpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// lowers the resolved statement tree to bytecode for the vm, one chunk per function body
+class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+    private Chunk chunk;
+    private int line = 0;
+    // scopes pushed so far in the current chunk, break and continue pop back to their loop's depth
+    private int scopeDepth = 0;
+    private Loop loop = null;
+    private final ErrorReporter reporter;
+
+    // a loop, or a select, which break leaves too while continue goes on to the loop around it
+    // a range loop keeps its iterator on the stack, which a labelled jump out of it pops
+    private static class Loop {
+        final Loop enclosing;
+        final int scopeDepth;
+        final boolean isSelect;
+        final Token label;
+        final boolean holdsIterator;
+        final List<Integer> breakJumps = new ArrayList<>();
+        final List<Integer> continueJumps = new ArrayList<>();
+
+        Loop(Loop enclosing, int scopeDepth, boolean isSelect, Token label, boolean holdsIterator) {
+            this.enclosing = enclosing;
+            this.scopeDepth = scopeDepth;
+            this.isSelect = isSelect;
+            this.label = label;
+            this.holdsIterator = holdsIterator;
+        }
+    }
+
+    Compiler(ErrorReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    Chunk compile(List<Statement> statements) {
+        chunk = new Chunk(null, false);
+        for (Statement statement : statements) {
+            compile(statement);
+        }
+        emit(OpCode.NIL);
+        emit(OpCode.RETURN);
+        chunk.finish();
+        return chunk;
+    }
+
+    private void compile(Statement statement) {
+        statement.accept(this);
+    }
+
+    private void compile(Expression expression) {
+        expression.accept(this);
+    }
+
+    private Chunk function(Statement.Function declaration, boolean isInitializer) {
+        Chunk enclosing = chunk;
+        int enclosingScopeDepth = scopeDepth;
+        Loop enclosingLoop = loop;
+        chunk = new Chunk(declaration, isInitializer);
+        scopeDepth = 0;
+        loop = null;
+        line = declaration.name.line;
+        for (Statement statement : declaration.body) {
+            compile(statement);
+        }
+        emitImplicitReturn();
+        chunk.finish();
+        Chunk compiled = chunk;
+        chunk = enclosing;
+        scopeDepth = enclosingScopeDepth;
+        loop = enclosingLoop;
+        return compiled;
+    }
+
+    // falling off the end of an initializer hands back the instance, like Function.call does
+    private void emitImplicitReturn() {
+        if (chunk.isInitializer) {
+            emit(OpCode.GET_LOCAL);
+            emitShort(0);
+            emitShort(0);
+        } else {
+            emit(OpCode.NIL);
+        }
+        emit(OpCode.RETURN);
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Statements
+    //////////////////////////////////////////////////////////
+
+    public Void visitBlockStatement(Statement.Block statement) {
+        if (!statement.hasScope()) {
+            for (Statement inner : statement.statements) {
+                compile(inner);
+            }
+            return null;
+        }
+        emit(OpCode.PUSH_SCOPE);
+        emitShort(statement.slotCount);
+        scopeDepth++;
+        for (Statement inner : statement.statements) {
+            compile(inner);
+        }
+        scopeDepth--;
+        emit(OpCode.POP_SCOPE);
+        return null;
+    }
+
+    public Void visitClassStatement(Statement.Class statement) {
+        line = statement.name.line;
+        emit(OpCode.NIL);
+        emitDefine(statement.slot, statement.name);
+        if (statement.superclass != null) {
+            compile(statement.superclass);
+            line = statement.name.line;
+            emit(OpCode.INHERIT);
+        }
+        for (Statement.Function method : statement.methods) {
+            Chunk body = function(method, method.name.lexeme.equals("init"));
+            line = method.name.line;
+            emit(OpCode.CLOSURE);
+            emitShort(constant(body));
+        }
+        line = statement.name.line;
+        emit(OpCode.CLASS);
+        emitShort(name(statement.name.lexeme));
+        emitShort(statement.methods.size());
+        emit(statement.superclass != null ? 1 : 0);
+        if (statement.slot < 0) {
+            emit(OpCode.SET_GLOBAL);
+            emitShort(name(statement.name.lexeme));
+        } else {
+            emit(OpCode.SET_LOCAL);
+            emitShort(0);
+            emitShort(statement.slot);
+        }
+        emit(OpCode.POP);
+        return null;
+    }
+
+    public Void visitFunctionStatement(Statement.Function statement) {
+        Chunk body = function(statement, false);
+        line = statement.name.line;
+        emit(OpCode.CLOSURE);
+        emitShort(constant(body));
+        emitDefine(statement.slot, statement.name);
+        return null;
+    }
+
+    public Void visitExpressionStatement(Statement.ExpressionStmt statement) {
+        compile(statement.expression);
+        emit(OpCode.POP);
+        return null;
+    }
+
+    public Void visitIfStatement(Statement.If statement) {
+        compile(statement.condition);
+        int thenJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP);
+        compile(statement.thenBranch);
+        int elseJump = emitJump(OpCode.JUMP);
+        patchJump(thenJump);
+        emit(OpCode.POP);
+        if (statement.elseBranch != null) compile(statement.elseBranch);
+        patchJump(elseJump);
+        return null;
+    }
+
+    public Void visitPrintStatement(Statement.Print statement) {
+        compile(statement.expression);
+        emit(OpCode.PRINT);
+        return null;
+    }
+
+    public Void visitReturnStatement(Statement.Return statement) {
+        if (Interpreter.isTailCall(statement)) {
+            // the callee reuses this function's frame, RETURN only runs when it could not
+            Expression.Call call = (Expression.Call) statement.value;
+            compile(call.call);
+            for (Expression argument : call.arguments) {
+                compile(argument);
+            }
+            line = call.name.line;
+            emit(OpCode.TAIL_CALL);
+            emit(call.arguments.size());
+        } else if (statement.value != null) {
+            compile(statement.value);
+        } else {
+            emit(OpCode.NIL);
+        }
+        line = statement.keyword.line;
+        emit(OpCode.RETURN);
+        return null;
+    }
+
+    public Void visitVarStatement(Statement.Var statement) {
+        declare(statement.slot, statement.name, statement.initializer);
+        return null;
+    }
+
+    public Void visitInitializerStatement(Statement.Initializer statement) {
+        declare(statement.slot, statement.name, statement.initializer);
+        return null;
+    }
+
+    private void declare(int slot, Token name, Expression initializer) {
+        if (initializer != null) {
+            compile(initializer);
+        } else {
+            emit(OpCode.NIL);
+        }
+        line = name.line;
+        emitDefine(slot, name);
+    }
+
+    // a slot of -1 means the Resolver saw the declaration at the top level
+    private void emitDefine(int slot, Token name) {
+        if (slot < 0) {
+            emit(OpCode.DEFINE_GLOBAL);
+            emitShort(name(name.lexeme));
+        } else {
+            emit(OpCode.DEFINE_LOCAL);
+            emitShort(slot);
+        }
+    }
+
+    public Void visitForStatement(Statement.For statement) {
+        if (statement.initializer != null) compile(statement.initializer);
+        int loopStart = chunk.count;
+        compile(statement.condition);
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP);
+        loop = new Loop(loop, scopeDepth, false, statement.label, false);
+        compile(statement.body);
+        for (int jump : loop.continueJumps) patchJump(jump);
+        if (statement.increment != null) {
+            compile(statement.increment);
+            emit(OpCode.POP);
+        }
+        emitLoop(loopStart);
+        patchJump(exitJump);
+        emit(OpCode.POP);
+        endLoop();
+        return null;
+    }
+
+    public Void visitWhileStatement(Statement.While statement) {
+        int loopStart = chunk.count;
+        compile(statement.condition);
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP);
+        loop = new Loop(loop, scopeDepth, false, statement.label, false);
+        compile(statement.body);
+        for (int jump : loop.continueJumps) patchJump(jump);
+        emitLoop(loopStart);
+        patchJump(exitJump);
+        emit(OpCode.POP);
+        endLoop();
+        return null;
+    }
+
+    // breaks land after the condition has been popped, so they jump past the final POP
+    private void endLoop() {
+        for (int jump : loop.breakJumps) patchJump(jump);
+        loop = loop.enclosing;
+    }
+
+    public Void visitBreakStatement(Statement.Break statement) {
+        line = statement.keyword.line;
+        Loop target = statement.label == null ? loop : labelled(statement.label);
+        emitScopeExits(target.scopeDepth);
+        emitIteratorPops(target);
+        target.breakJumps.add(emitJump(OpCode.JUMP));
+        return null;
+    }
+
+    public Void visitContinueStatement(Statement.Continue statement) {
+        line = statement.keyword.line;
+        Loop target = loop;
+        if (statement.label != null) {
+            target = labelled(statement.label);
+        } else {
+            while (target.isSelect) target = target.enclosing;
+        }
+        emitScopeExits(target.scopeDepth);
+        emitIteratorPops(target);
+        target.continueJumps.add(emitJump(OpCode.JUMP));
+        return null;
+    }
+
+    // the loop a labelled break or continue names, the Resolver has checked that there is one
+    private Loop labelled(Token label) {
+        Loop target = loop;
+        while (target.label == null || !target.label.lexeme.equals(label.lexeme)) target = target.enclosing;
+        return target;
+    }
+
+    // pops the iterators of the range loops inside target that a jump to it leaves
+    private void emitIteratorPops(Loop target) {
+        for (Loop inner = loop; inner != target; inner = inner.enclosing) {
+            if (inner.holdsIterator) emit(OpCode.POP);
+        }
+    }
+
+    public Void visitGoStatement(Statement.Go statement) {
+        Expression.Call call = statement.call;
+        compile(call.call);
+        for (Expression argument : call.arguments) {
+            compile(argument);
+        }
+        line = call.name.line;
+        emit(OpCode.GO);
+        emit(call.arguments.size());
+        return null;
+    }
+
+    public Void visitSendStatement(Statement.Send statement) {
+        compile(statement.channel);
+        compile(statement.value);
+        line = statement.arrow.line;
+        emit(OpCode.SEND);
+        return null;
+    }
+
+    // the chosen case starts with what it received, or nil, and whether it was sent on the stack: they are
+    // assigned to the targets or dropped, with := in a scope of the case's own
+    public Void visitSelectStatement(Statement.Select statement) {
+        List<Statement.Select.Case> cases = statement.cases;
+        for (Statement.Select.Case selectCase : cases) {
+            if (selectCase.channel == null) continue;
+            compile(selectCase.channel);
+            if (selectCase.value != null) compile(selectCase.value);
+        }
+        line = statement.keyword.line;
+        emit(OpCode.SELECT);
+        emit(cases.size());
+        int table = chunk.count;
+        for (Statement.Select.Case selectCase : cases) {
+            if (selectCase.channel == null) {
+                emit(OpCode.SELECT_DEFAULT);
+            } else {
+                emit(selectCase.value == null ? OpCode.SELECT_RECEIVE : OpCode.SELECT_SEND);
+            }
+            emitShort(0);
+        }
+        int end = chunk.count;
+        loop = new Loop(loop, scopeDepth, true, null, false);
+        List<Integer> exits = new ArrayList<>();
+        for (int i = 0; i < cases.size(); i++) {
+            Statement.Select.Case selectCase = cases.get(i);
+            patchOffset(table + i * 3 + 1, chunk.count - end);
+            line = selectCase.keyword.line;
+            if (selectCase.declare) {
+                emit(OpCode.PUSH_SCOPE);
+                emitShort(selectCase.slotCount);
+                scopeDepth++;
+            }
+            emitBind(selectCase.ok, false);
+            emitBind(selectCase.target, false);
+            compile(selectCase.body);
+            if (selectCase.declare) {
+                scopeDepth--;
+                emit(OpCode.POP_SCOPE);
+            }
+            exits.add(emitJump(OpCode.JUMP));
+        }
+        for (int jump : exits) patchJump(jump);
+        endLoop();
+        return null;
+    }
+
+    public Void visitLookupStatement(Statement.Lookup statement) {
+        if (statement.source instanceof Expression.Receive) {
+            Expression.Receive receive = (Expression.Receive) statement.source;
+            compile(receive.channel);
+            line = receive.arrow.line;
+            emit(OpCode.RECEIVE_OK);
+        } else {
+            Expression.Index index = (Expression.Index) statement.source;
+            compile(index.object);
+            compile(index.index);
+            line = index.bracket.line;
+            emit(OpCode.LOOKUP);
+        }
+        emitBind(statement.ok, statement.declare);
+        emitBind(statement.value, statement.declare);
+        return null;
+    }
+
+    // pops the value on top of the stack into a target of := or =, like Interpreter.bind
+    private void emitBind(Expression.Variable target, boolean declare) {
+        if (target == null) {
+            emit(OpCode.POP);
+        } else if (declare && target.depth == Expression.GLOBAL) {
+            emit(OpCode.DEFINE_GLOBAL);
+            emitShort(name(target.name.lexeme));
+        } else {
+            emitSet(target, target.name);
+            emit(OpCode.POP);
+        }
+    }
+
+    // the iterator stays on the stack for the whole loop, NEXT pushes the key and the value above it
+    // with := each iteration pushes a scope for the two variables, which continue and break pop like the
+    // scopes of the body
+    public Void visitRangeStatement(Statement.Range statement) {
+        compile(statement.object);
+        line = statement.keyword.line;
+        emit(OpCode.RANGE);
+        int loopStart = chunk.count;
+        int exitJump = emitJump(OpCode.NEXT);
+        loop = new Loop(loop, scopeDepth, false, statement.label, true);
+        if (statement.declare) {
+            emit(OpCode.PUSH_SCOPE);
+            emitShort(statement.slotCount);
+            scopeDepth++;
+        }
+        emitBind(statement.value, false);
+        emitBind(statement.key, false);
+        compile(statement.body);
+        if (statement.declare) {
+            scopeDepth--;
+            emit(OpCode.POP_SCOPE);
+        }
+        for (int jump : loop.continueJumps) patchJump(jump);
+        emitLoop(loopStart);
+        patchJump(exitJump);
+        endLoop();
+        emit(OpCode.POP);
+        return null;
+    }
+
+    private void emitScopeExits(int depth) {
+        for (int i = scopeDepth; i > depth; i--) {
+            emit(OpCode.POP_SCOPE);
+        }
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Expressions
+    //////////////////////////////////////////////////////////
+
+    public Void visitVariableExpression(Expression.Variable expression) {
+        line = expression.name.line;
+        emitGet(expression, expression.name.lexeme);
+        return null;
+    }
+
+    public Void visitAssignExpression(Expression.Assign expression) {
+        compile(expression.value);
+        line = expression.name.line;
+        emitSet(expression, expression.name);
+        return null;
+    }
+
+    // stores the value on top of the stack, leaving it there
+    private void emitSet(Expression.Resolvable target, Token name) {
+        if (target.depth != Expression.GLOBAL) {
+            emit(OpCode.SET_LOCAL);
+            emitShort(target.depth);
+            emitShort(target.slot);
+        } else {
+            emit(OpCode.SET_GLOBAL);
+            emitShort(name(name.lexeme));
+        }
+    }
+
+    public Void visitBinaryExpression(Expression.Binary expression) {
+        compile(expression.left);
+        compile(expression.right);
+        line = expression.operator.line;
+        switch (expression.operator.tokenType) {
+            case BANG_EQUAL: emit(OpCode.NOT_EQUAL); break;
+            case EQUAL_EQUAL: emit(OpCode.EQUAL); break;
+            case GREATER: emit(OpCode.GREATER); break;
+            case GREATER_EQUAL: emit(OpCode.GREATER_EQUAL); break;
+            case LESS: emit(OpCode.LESS); break;
+            case LESS_EQUAL: emit(OpCode.LESS_EQUAL); break;
+            case PLUS: emit(OpCode.ADD); break;
+            case MINUS: emit(OpCode.SUBTRACT); break;
+            case STAR: emit(OpCode.MULTIPLY); break;
+            case SLASH: emit(OpCode.DIVIDE); break;
+            case PERCENT: emit(OpCode.MODULO); break;
+            default:
+                // the tree-walker evaluates both operands and yields nil for anything else
+                emit(OpCode.POP);
+                emit(OpCode.POP);
+                emit(OpCode.NIL);
+        }
+        return null;
+    }
+
+    public Void visitUnaryExpression(Expression.Unary expression) {
+        compile(expression.right);
+        line = expression.operator.line;
+        switch (expression.operator.tokenType) {
+            case BANG: emit(OpCode.NOT); break;
+            case MINUS: emit(OpCode.NEGATE); break;
+            default:
+                emit(OpCode.POP);
+                emit(OpCode.NIL);
+        }
+        return null;
+    }
+
+    public Void visitLogicalExpression(Expression.Logical expression) {
+        compile(expression.left);
+        line = expression.operator.line;
+        if (expression.operator.tokenType == TokenType.OR) {
+            int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+            int endJump = emitJump(OpCode.JUMP);
+            patchJump(elseJump);
+            emit(OpCode.POP);
+            compile(expression.right);
+            patchJump(endJump);
+        } else {
+            int endJump = emitJump(OpCode.JUMP_IF_FALSE);
+            emit(OpCode.POP);
+            compile(expression.right);
+            patchJump(endJump);
+        }
+        return null;
+    }
+
+    public Void visitCallExpression(Expression.Call expression) {
+        // a method call does the property lookup and the call in one instruction, without a bound method
+        if (expression.call instanceof Expression.Get) {
+            Expression.Get callee = (Expression.Get) expression.call;
+            compile(callee.object);
+            for (Expression argument : expression.arguments) {
+                compile(argument);
+            }
+            line = expression.name.line;
+            emit(OpCode.INVOKE);
+            emitShort(name(callee.name.lexeme));
+            emit(expression.arguments.size());
+            return null;
+        }
+        compile(expression.call);
+        for (Expression argument : expression.arguments) {
+            compile(argument);
+        }
+        line = expression.name.line;
+        emit(OpCode.CALL);
+        emit(expression.arguments.size());
+        return null;
+    }
+
+    public Void visitGetExpression(Expression.Get expression) {
+        compile(expression.object);
+        line = expression.name.line;
+        emit(OpCode.GET_PROPERTY);
+        emitShort(name(expression.name.lexeme));
+        return null;
+    }
+
+    public Void visitSetExpression(Expression.Set expression) {
+        compile(expression.object);
+        compile(expression.value);
+        line = expression.name.line;
+        emit(OpCode.SET_PROPERTY);
+        emitShort(name(expression.name.lexeme));
+        return null;
+    }
+
+    public Void visitGroupingExpression(Expression.Grouping expression) {
+        compile(expression.expression);
+        return null;
+    }
+
+    public Void visitLiteralExpression(Expression.Literal expression) {
+        if (expression.literal == null) {
+            emit(OpCode.NIL);
+        } else if (expression.literal.equals(Boolean.TRUE)) {
+            emit(OpCode.TRUE);
+        } else if (expression.literal.equals(Boolean.FALSE)) {
+            emit(OpCode.FALSE);
+        } else {
+            emit(OpCode.CONSTANT);
+            emitShort(constant(expression.literal));
+        }
+        return null;
+    }
+
+    public Void visitThisExpression(Expression.This expression) {
+        line = expression.keyword.line;
+        emitGet(expression, "this");
+        return null;
+    }
+
+    public Void visitSuperExpression(Expression.Super expression) {
+        line = expression.keyword.line;
+        emit(OpCode.GET_SUPER);
+        emitShort(expression.depth);
+        emitShort(expression.thisDepth);
+        emitShort(name(expression.method.lexeme));
+        return null;
+    }
+
+    public Void visitReceiveExpression(Expression.Receive expression) {
+        compile(expression.channel);
+        line = expression.arrow.line;
+        emit(OpCode.RECEIVE);
+        return null;
+    }
+
+    public Void visitMakeExpression(Expression.Make expression) {
+        if (expression.kind == TokenType.LEFT_BRACKET) {
+            compile(expression.arguments.get(0));
+            if (expression.arguments.size() > 1) {
+                compile(expression.arguments.get(1));
+            } else {
+                line = expression.keyword.line;
+                emit(OpCode.NIL);
+            }
+            line = expression.keyword.line;
+            emit(OpCode.MAKE_SLICE);
+            emit(expression.element);
+            return null;
+        }
+        if (expression.arguments.isEmpty()) {
+            line = expression.keyword.line;
+            emit(OpCode.CONSTANT);
+            emitShort(constant(Arithmetic.box(0)));
+        } else {
+            compile(expression.arguments.get(0));
+        }
+        line = expression.keyword.line;
+        emit(OpCode.MAKE_CHANNEL);
+        emit(expression.element);
+        return null;
+    }
+
+    public Void visitIndexExpression(Expression.Index expression) {
+        compile(expression.object);
+        compile(expression.index);
+        line = expression.bracket.line;
+        emit(OpCode.GET_INDEX);
+        return null;
+    }
+
+    public Void visitSetIndexExpression(Expression.SetIndex expression) {
+        compile(expression.object);
+        compile(expression.index);
+        compile(expression.value);
+        line = expression.bracket.line;
+        emit(OpCode.SET_INDEX);
+        return null;
+    }
+
+    public Void visitSlicingExpression(Expression.Slicing expression) {
+        compile(expression.object);
+        int bounds = 0;
+        if (expression.low != null) {
+            compile(expression.low);
+            bounds |= 1;
+        }
+        if (expression.high != null) {
+            compile(expression.high);
+            bounds |= 2;
+        }
+        line = expression.bracket.line;
+        emit(OpCode.SLICE);
+        emit(bounds);
+        return null;
+    }
+
+    public Void visitSliceLiteralExpression(Expression.SliceLiteral expression) {
+        line = expression.bracket.line;
+        emit(OpCode.CONSTANT);
+        emitShort(constant(Arithmetic.box(expression.length)));
+        for (Expression element : expression.elements) {
+            compile(element);
+        }
+        line = expression.bracket.line;
+        emit(OpCode.SLICE_LITERAL);
+        emit(expression.kind);
+        emitShort(expression.elements.size());
+        return null;
+    }
+
+    public Void visitMapLiteralExpression(Expression.MapLiteral expression) {
+        if (expression.size != null) {
+            compile(expression.size);
+        } else {
+            line = expression.keyword.line;
+            emit(OpCode.NIL);
+        }
+        for (int i = 0; i < expression.keys.size(); i++) {
+            compile(expression.keys.get(i));
+            compile(expression.values.get(i));
+        }
+        line = expression.keyword.line;
+        emit(OpCode.MAP_LITERAL);
+        emitShort(constant(expression.type));
+        emitShort(expression.keys.size());
+        return null;
+    }
+
+    private void emitGet(Expression.Resolvable expression, String name) {
+        if (expression.depth != Expression.GLOBAL) {
+            emit(OpCode.GET_LOCAL);
+            emitShort(expression.depth);
+            emitShort(expression.slot);
+        } else {
+            emit(OpCode.GET_GLOBAL);
+            emitShort(name(name));
+        }
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Emitting bytecode
+    //////////////////////////////////////////////////////////
+
+    private void emit(int value) {
+        chunk.write(value, line);
+    }
+
+    private void emitShort(int value) {
+        chunk.writeShort(value, line);
+    }
+
+    private int name(String lexeme) {
+        return constant(lexeme);
+    }
+
+    private int constant(Object value) {
+        int index = chunk.addConstant(value);
+        if (index > 0xffff) {
+            reporter.error(line, "Too many constants in one chunk.");
+            return 0;
+        }
+        return index;
+    }
+
+    private int emitJump(byte instruction) {
+        emit(instruction);
+        emitShort(0xffff);
+        return chunk.count - 2;
+    }
+
+    private void patchJump(int offset) {
+        patchOffset(offset, chunk.count - offset - 2);
+    }
+
+    private void patchOffset(int offset, int jump) {
+        if (jump > 0xffff) {
+            reporter.error(line, "Too much code to jump over.");
+        }
+        chunk.code[offset] = (byte) ((jump >> 8) & 0xff);
+        chunk.code[offset + 1] = (byte) (jump & 0xff);
+    }
+
+    private void emitLoop(int loopStart) {
+        emit(OpCode.LOOP);
+        int offset = chunk.count - loopStart + 2;
+        if (offset > 0xffff) {
+            reporter.error(line, "Loop body too large.");
+        }
+        emitShort(offset);
+    }
+}
@@ -0,0 +1,10 @@
+package gointerpreter;
+
+// how a statement finished, handed back to the caller instead of throwing for control flow
+// a RETURN leaves its value in the interpreter until the enclosing call picks it up
+enum Completion {
+    NORMAL,
+    RETURN,
+    BREAK,
+    CONTINUE
+}
@@ -0,0 +1,78 @@
+package gointerpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.script.ScriptException;
+
+// runs a script through the embedding API the way a service would: compiled once by GoEngine, then executed
+// by several threads at once
+// usage: EngineRunner script [runs]
+// run i gets the bindings run = i and runs = the number of runs, and what each run printed is shown under its
+// number in order, followed by its error if it failed, and the exit status is 70 when any run failed
+public class EngineRunner {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: EngineRunner script [runs]");
+            System.exit(64);
+        }
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        String source = new String(Files.readAllBytes(Paths.get(args[0])), Charset.defaultCharset());
+        CompiledProgram program;
+        try {
+            program = GoEngine.compile(source);
+        } catch (ScriptException error) {
+            System.out.println(error.getMessage());
+            System.exit(65);
+            return;
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(runs);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            int run = i;
+            results.add(pool.submit(() -> execute(program, Map.of("run", run, "runs", runs), failed)));
+        }
+        pool.shutdown();
+        for (int i = 0; i < runs; i++) {
+            System.out.println("== run " + i + " ==");
+            System.out.print(await(results.get(i)));
+        }
+        System.out.flush();
+        if (failed.get()) System.exit(70);
+    }
+
+    private static String execute(CompiledProgram program, Map<String, ?> bindings, AtomicBoolean failed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream output = new PrintStream(out, true);
+        try {
+            program.execute(bindings, output);
+        } catch (ScriptException error) {
+            output.println("error: " + error.getMessage());
+            failed.set(true);
+        }
+        return out.toString();
+    }
+
+    private static String await(Future<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(error);
+        } catch (ExecutionException error) {
+            throw new IllegalStateException(error.getCause());
+        }
+    }
+}
@@ -1,46 +1,56 @@
 package gointerpreter;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 class Environment {
     final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
+    // local scopes are flat frames indexed by the slots the Resolver hands out
+    final Object[] slots;
+    // only the global scope is keyed by name, globals are looked up late so they can be used before their declaration
+    // goroutines share the globals, so the map is a concurrent one, which cannot hold null: nil is stored as NIL
+    private final Map<String, Object> values;
+    private static final Object NIL = new Object();
 
     Environment() {
         enclosing = null;
+        slots = null;
+        values = new ConcurrentHashMap<>();
     }
 
-    Environment(Environment enclosing) {
+    Environment(Environment enclosing, int size) {
         this.enclosing = enclosing;
+        this.slots = new Object[size];
+        this.values = null;
     }
 
     Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
-        }
+        return get(name.lexeme, name.line);
+    }
 
-        if (enclosing != null) return enclosing.get(name);
+    Object get(String name, int line) {
+        Object value = values.get(name);
+        if (value != null) {
+            return value == NIL ? null : value;
+        }
 
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+        throw new RuntimeError(line, "Undefined variable '" + name + "'.");
     }
 
     void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
-            return;
-        }
+        assign(name.lexeme, name.line, value);
+    }
 
-        if (enclosing != null) {
-            enclosing.assign(name, value);
+    void assign(String name, int line, Object value) {
+        if (values.replace(name, value == null ? NIL : value) != null) {
             return;
         }
 
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+        throw new RuntimeError(line, "Undefined variable '" + name + "'.");
     }
 
     void define(String name, Object value) {
-        values.put(name, value);
+        values.put(name, value == null ? NIL : value);
     }
 
     Environment ancestor(int distance) {
@@ -52,11 +62,11 @@ class Environment {
         return environment;
     }
 
-    Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+    Object getAt(int distance, int slot) {
+        return ancestor(distance).slots[slot];
     }
 
-    void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+    void assignAt(int distance, int slot, Object value) {
+        ancestor(distance).slots[slot] = value;
     }
 }
@@ -0,0 +1,68 @@
+package gointerpreter;
+
+import java.io.PrintStream;
+
+// the error state of one run, so several scripts can be scanned, parsed and run side by side
+// errors go to err, the scanner's warnings are printed along with the program's output on out
+// out is buffered, see Output, and flushed before an error is written so the two still come in order
+class ErrorReporter {
+    final Output out;
+    final PrintStream err;
+    // goroutines report their runtime errors from threads of their own
+    volatile boolean hadError = false;
+    volatile boolean hadRuntimeError = false;
+
+    ErrorReporter() {
+        this(System.out, System.err);
+    }
+
+    ErrorReporter(PrintStream out, PrintStream err) {
+        this(out, err, false);
+    }
+
+    ErrorReporter(PrintStream out, PrintStream err, boolean lineBuffered) {
+        this.out = new Output(out, lineBuffered);
+        this.err = err;
+    }
+
+    void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    void report(int line, String where, String message) {
+        out.flush();
+        err.println("[line "+line+"] Error"+where+": "+message);
+        hadError = true;
+    }
+
+    // polymorphism is used here for checking the type of the token
+    void error(Token token, String message) {
+        if (token.tokenType == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at " + token.lexeme + ":", message);
+        }
+    }
+
+    void runtimeError(RuntimeError error) {
+        out.flush();
+        err.println(error.getMessage() + "\n[line " + error.line + "]");
+        hadRuntimeError = true;
+    }
+
+    void warning(String message) {
+        out.println("Error: " + message);
+    }
+
+    // the exit status of a script, as sysexits.h has it
+    int status() {
+        if (hadError) return 65;
+        if (hadRuntimeError) return 70;
+        return 0;
+    }
+
+    void reset() {
+        hadError = false;
+        hadRuntimeError = false;
+    }
+}
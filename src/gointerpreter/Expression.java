@@ -2,6 +2,9 @@ package gointerpreter;
 
 import java.util.List;
 
+// per-site runtime caches are not part of the program, ProgramCache does not store them
+// a CompiledProgram runs one tree on many threads at once, so a cache is only ever replaced by an immutable
+// entry: a racing update can lose an entry but never show a half made one
 abstract class Expression {
     interface Visitor<R> {
 
@@ -18,11 +21,27 @@ abstract class Expression {
         R visitSetExpression(Set expression);
         R visitThisExpression(This expression);
         R visitSuperExpression(Super expression);
+        R visitReceiveExpression(Receive expression);
+        R visitMakeExpression(Make expression);
+        R visitIndexExpression(Index expression);
+        R visitSetIndexExpression(SetIndex expression);
+        R visitSlicingExpression(Slicing expression);
+        R visitSliceLiteralExpression(SliceLiteral expression);
+        R visitMapLiteralExpression(MapLiteral expression);
+    }
+
+    // marks a variable the Resolver did not find in any local scope, it is looked up by name in the globals
+    static final int GLOBAL = -1;
+
+    // expressions that refer to a variable, the Resolver writes down where it lives so no lookup is needed at runtime
+    abstract static class Resolvable extends Expression {
+        int depth = GLOBAL;
+        int slot;
     }
 
     // each expression type is added here as a subclass, they all implement the accept method, they all have a final field for each of their parameters, and they inherit the Statement class
 
-    static class Variable extends Expression {
+    static class Variable extends Resolvable {
         Variable(Token name) {
             this.name = name;
         }
@@ -34,7 +53,7 @@ abstract class Expression {
         final Token name;
     }
 
-    static class Assign extends Expression {
+    static class Assign extends Resolvable {
         Assign(Token name, Expression value) {
             this.name = name;
             this.value = value;
@@ -62,6 +81,8 @@ abstract class Expression {
         final Expression left;
         final Token operator;
         final Expression right;
+        // the specialized implementation installed by the interpreter's --specialize mode
+        Specialization.BinaryNode node;
     }
 
     static class Unary extends Expression {
@@ -76,6 +97,7 @@ abstract class Expression {
 
         final Token operator;
         final Expression right;
+        Specialization.UnaryNode node;
     }
 
     static class Call extends Expression {
@@ -92,6 +114,8 @@ abstract class Expression {
         final Expression call;
         final Token name;
         final List<Expression> arguments;
+        // methods called through this site when the callee is a Get, see Instance.method
+        Shape.MethodCache methods;
     }
 
     static class Get extends Expression {
@@ -106,6 +130,8 @@ abstract class Expression {
 
         final Expression object;
         final Token name;
+        // last shape seen by this property read, see Instance.get
+        Shape.Cache cache;
     }
 
     static class Grouping extends Expression {
@@ -162,9 +188,10 @@ abstract class Expression {
         final Expression object;
         final Token name;
         final Expression value;
+        Shape.Cache cache;
     }
 
-    static class This extends Expression {
+    static class This extends Resolvable {
         This(Token keyword) {
             this.keyword = keyword;
         }
@@ -176,7 +203,8 @@ abstract class Expression {
         final Token keyword;
     }
 
-    static class Super extends Expression {
+    // depth is where 'super' lives, thisDepth is the frame of the method whose receiver it applies to
+    static class Super extends Resolvable {
         Super(Token keyword, Token method) {
             this.keyword = keyword;
             this.method = method;
@@ -188,6 +216,138 @@ abstract class Expression {
 
         final Token keyword;
         final Token method;
+        int thisDepth;
+    }
+
+    // <-channel
+    static class Receive extends Expression {
+        Receive(Token arrow, Expression channel) {
+            this.arrow = arrow;
+            this.channel = channel;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitReceiveExpression(this);
+        }
+
+        final Token arrow;
+        final Expression channel;
+    }
+
+    // make(chan T[, capacity]) and make([]T, length[, capacity]), kind is the token the type starts with
+    // element is the Slice kind of a slice's or a channel's elements
+    static class Make extends Expression {
+        Make(Token keyword, TokenType kind, int element, List<Expression> arguments) {
+            this.keyword = keyword;
+            this.kind = kind;
+            this.element = element;
+            this.arguments = arguments;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitMakeExpression(this);
+        }
+
+        final Token keyword;
+        final TokenType kind;
+        final int element;
+        final List<Expression> arguments;
+    }
+
+    // slice[index] or map[key]
+    static class Index extends Expression {
+        Index(Expression object, Token bracket, Expression index) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitIndexExpression(this);
+        }
+
+        final Expression object;
+        final Token bracket;
+        final Expression index;
+    }
+
+    // slice[index] = value or map[key] = value
+    static class SetIndex extends Expression {
+        SetIndex(Expression object, Token bracket, Expression index, Expression value) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+            this.value = value;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSetIndexExpression(this);
+        }
+
+        final Expression object;
+        final Token bracket;
+        final Expression index;
+        final Expression value;
+    }
+
+    // slice[low:high], either bound may be null
+    static class Slicing extends Expression {
+        Slicing(Expression object, Token bracket, Expression low, Expression high) {
+            this.object = object;
+            this.bracket = bracket;
+            this.low = low;
+            this.high = high;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSlicingExpression(this);
+        }
+
+        final Expression object;
+        final Token bracket;
+        final Expression low;
+        final Expression high;
+    }
+
+    // []T{elements}, or the array [length]T{elements} when length is not negative
+    static class SliceLiteral extends Expression {
+        SliceLiteral(Token bracket, int kind, long length, List<Expression> elements) {
+            this.bracket = bracket;
+            this.kind = kind;
+            this.length = length;
+            this.elements = elements;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSliceLiteralExpression(this);
+        }
+
+        final Token bracket;
+        final int kind;
+        final long length;
+        final List<Expression> elements;
+    }
+
+    // map[K]V{key: value, ...}, and make(map[K]V[, size]) with no entries, size is null when it is left out
+    // type is the nil map of the map type
+    static class MapLiteral extends Expression {
+        MapLiteral(Token keyword, GoMap type, Expression size, List<Expression> keys, List<Expression> values) {
+            this.keyword = keyword;
+            this.type = type;
+            this.size = size;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitMapLiteralExpression(this);
+        }
+
+        final Token keyword;
+        final GoMap type;
+        final Expression size;
+        final List<Expression> keys;
+        final List<Expression> values;
     }
 
     abstract <R> R accept(Visitor<R> visitor);
@@ -3,20 +3,25 @@ package gointerpreter;
 import java.util.List;
 
 class Function implements Callable{
-    private final Statement.Function declaration;
-    private final Environment closure;
-    private final boolean isInitializer;
+    final Statement.Function declaration;
+    final Environment closure;
+    final boolean isInitializer;
+    // the instance a method was bound to, it is passed in slot 0 of the method's frame
+    final Instance receiver;
 
     Function(Statement.Function declaration, Environment closure, boolean isInitializer) {
+        this(declaration, closure, isInitializer, null);
+    }
+
+    Function(Statement.Function declaration, Environment closure, boolean isInitializer, Instance receiver) {
         this.isInitializer = isInitializer;
         this.closure = closure;
         this.declaration = declaration;
+        this.receiver = receiver;
     }
 
     Function bind(Instance instance) {
-        Environment environment = new Environment(closure);
-        environment.define("this", instance);
-        return new Function(declaration, environment, isInitializer);
+        return new Function(declaration, closure, isInitializer, instance);
     }
 
     public String toString() {
@@ -29,18 +34,52 @@ class Function implements Callable{
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(closure);
+        return invoke(interpreter, receiver, arguments);
+    }
+
+    // calls the method with receiver as 'this' without binding it first, receiver is null for plain functions
+    // a body ending in a tail call hands back the call, which is made here in a loop instead of a frame deeper
+    Object invoke(Interpreter interpreter, Instance receiver, List<Object> arguments) {
+        Object result = run(interpreter, receiver, arguments);
+        while (result instanceof TailCall) {
+            TailCall next = (TailCall) result;
+            result = next.function.run(interpreter, next.function.receiver, next.arguments);
+        }
+        return result;
+    }
+
+    private Object run(Interpreter interpreter, Instance receiver, List<Object> arguments) {
+        Environment environment = new Environment(closure, declaration.slotCount);
+        int first = 0;
+        if (receiver != null) {
+            environment.slots[0] = receiver;
+            first = 1;
+        }
         for (int i = 0; i < declaration.parameters.size(); i++) {
-            environment.define(declaration.parameters.get(i).lexeme, arguments.get(i));
+            environment.slots[first + i] = arguments.get(i);
         }
 
-        try {
-            interpreter.executeBlock(declaration.body, environment);
-        } catch (Return returnValue) {
-            return returnValue.value;
+        // initializers are left to the tree-walker, they return their receiver however they end
+        if (interpreter.jit != null && !isInitializer) {
+            Jit.Code code = interpreter.jit.code(declaration);
+            if (code != null) return code.run(interpreter, environment);
+        }
+        if (interpreter.executeBody(declaration, environment) == Completion.RETURN) {
+            return interpreter.takeReturnValue();
         }
 
-        if (isInitializer) return closure.getAt(0, "this");
+        if (isInitializer) return receiver;
         return null;
     }
+
+    // what the body returns for return f(...), see Interpreter.isTailCall
+    static final class TailCall {
+        final Function function;
+        final List<Object> arguments;
+
+        TailCall(Function function, List<Object> arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+    }
 }
@@ -0,0 +1,25 @@
+package gointerpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import javax.script.ScriptException;
+
+// entry point for embedding the interpreter: a source is compiled once and the CompiledProgram is run as
+// often as needed, from any number of threads
+public final class GoEngine {
+    private GoEngine() {}
+
+    // scans, parses and resolves source, every problem the front end finds is reported in the exception
+    public static CompiledProgram compile(String source) throws ScriptException {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream messages = new PrintStream(errors, true);
+        // the scanner prints its warnings on out, for an embedded program they are errors like the others
+        ErrorReporter reporter = new ErrorReporter(messages, messages);
+        Scanner scanner = new Scanner(source, reporter);
+        List<Statement> statements = new Parser(scanner).parse();
+        if (!reporter.hadError && !scanner.hadWarning) new Resolver(reporter).resolve(statements);
+        if (reporter.hadError || scanner.hadWarning) throw new ScriptException(errors.toString().trim());
+        return new CompiledProgram(statements);
+    }
+}
@@ -0,0 +1,373 @@
+package gointerpreter;
+
+import java.util.Arrays;
+
+// a Go map: an open addressing hash table with linear probing, specialized on the kind of its keys
+// int keys, and float keys by their bits, are kept unboxed in a long[] next to a flag per slot telling whether
+// it is in use, so a lookup hashes a long and compares longs; strings, bools and other keys are kept in an
+// Object[] where null marks a free slot, strings as Strings, whose hash is cached
+// values are kept like slice elements, unboxed in a long[] or a double[] for int and float values
+// deleting shifts the entries after the slot back instead of leaving a tombstone, so lookups never slow down
+// a nil map has no table, it reads as empty and cannot be written to; the nil map of a map type is also what
+// the tree and the bytecode keep to describe the type
+// float keys compare as in Go: 0 and -0 are one key and NaN equals nothing, not even itself, so every
+// m[NaN] = v adds an entry that no lookup or delete finds again and only range and printing see
+// like a Go map it is not safe for goroutines to write to one map at the same time
+final class GoMap {
+    private static final int MIN_CAPACITY = 8;
+    // the bits every NaN float key is stored as
+    private static final long NAN = Double.doubleToLongBits(Double.NaN);
+
+    final int keyKind;
+    final int valueKind;
+    // what a missing key reads as: the zero value of the value kind, or a nil slice or map for those types
+    final Object zero;
+    private final boolean nil;
+    // long keys and whether each slot is used, for int and float keys
+    private long[] longKeys;
+    private boolean[] used;
+    // the other keys, null in free slots
+    private Object[] keys;
+    // a long[], double[] or Object[] as for slices
+    private Object values;
+    // 64 minus the log of the capacity, so that home() gives a slot
+    private int shift;
+    private int size = 0;
+    // entries with a NaN key, which stay until the map is dropped since delete cannot find them
+    private int nans = 0;
+
+    private GoMap(int keyKind, int valueKind, Object zero, int capacity) {
+        this.keyKind = keyKind;
+        this.valueKind = valueKind;
+        this.zero = zero;
+        this.nil = capacity == 0;
+        if (capacity > 0) allocate(capacity);
+    }
+
+    static GoMap nil(int keyKind, int valueKind, Object zero) {
+        return new GoMap(keyKind, valueKind, zero, 0);
+    }
+
+    // make(map[K]V[, hint]) and map literals, with room for hint entries, type is the nil map of the type
+    static GoMap make(GoMap type, Object hint, int line) {
+        long count = Interpreter.size(hint, line);
+        int capacity = MIN_CAPACITY;
+        while (capacity < (1 << 30) && full(count, capacity)) capacity *= 2;
+        return new GoMap(type.keyKind, type.valueKind, type.zero, capacity);
+    }
+
+    static GoMap cast(Object value, int line) {
+        if (!(value instanceof GoMap)) throw new RuntimeError(line, "Operand must be a map.");
+        return (GoMap) value;
+    }
+
+    boolean isNil() {
+        return nil;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // map[key], zero when key is not in the map
+    Object get(Object key, int line) {
+        int at = find(key, line);
+        return at < 0 ? zero : valueAt(at);
+    }
+
+    // the slot of key, or -1 when it is not in the map
+    int find(Object key, int line) {
+        if (isLongKeyed()) {
+            long wanted = longKey(key, line);
+            if (size == 0 || isNaN(wanted)) return -1;
+            int mask = used.length - 1;
+            for (int i = home(wanted); used[i]; i = (i + 1) & mask) {
+                if (longKeys[i] == wanted) return i;
+            }
+            return -1;
+        }
+        Object wanted = objectKey(key, line);
+        if (size == 0 || isNaN(wanted)) return -1;
+        int mask = keys.length - 1;
+        for (int i = home(wanted.hashCode()); keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(wanted)) return i;
+        }
+        return -1;
+    }
+
+    Object valueAt(int at) {
+        switch (valueKind) {
+            case Slice.INT: return Arithmetic.box(((long[]) values)[at]);
+            case Slice.FLOAT: return ((double[]) values)[at];
+            default: return ((Object[]) values)[at];
+        }
+    }
+
+    // map[key] = value
+    void put(Object key, Object value, int line) {
+        if (nil) throw new RuntimeError(line, "Assignment to entry in nil map.");
+        if (!Slice.holds(valueKind, value)) throw new RuntimeError(line, "Value must be " + Slice.name(valueKind) + ".");
+        int at;
+        if (isLongKeyed()) {
+            long added = longKey(key, line);
+            at = slot(added);
+            if (!used[at]) {
+                if (full(size + 1, used.length)) {
+                    rehash();
+                    at = slot(added);
+                }
+                used[at] = true;
+                longKeys[at] = added;
+                size++;
+                if (isNaN(added)) nans++;
+            }
+        } else {
+            Object added = objectKey(key, line);
+            at = slot(added);
+            if (keys[at] == null) {
+                if (full(size + 1, keys.length)) {
+                    rehash();
+                    at = slot(added);
+                }
+                keys[at] = added;
+                size++;
+                if (isNaN(added)) nans++;
+            }
+        }
+        switch (valueKind) {
+            case Slice.INT:
+                ((long[]) values)[at] = (long) value;
+                break;
+            case Slice.FLOAT:
+                ((double[]) values)[at] = Arithmetic.toDouble(value);
+                break;
+            default:
+                ((Object[]) values)[at] = value;
+        }
+    }
+
+    // delete(map, key), entries further along the probe sequence move back into the freed slot when the slot
+    // is on their way from their home slot
+    void delete(Object key, int line) {
+        int hole = find(key, line);
+        if (hole < 0) return;
+        int mask = capacity() - 1;
+        for (int i = (hole + 1) & mask; isUsed(i); i = (i + 1) & mask) {
+            int home = isLongKeyed() ? home(longKeys[i]) : home(keys[i].hashCode());
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                move(i, hole);
+                hole = i;
+            }
+        }
+        if (isLongKeyed()) {
+            used[hole] = false;
+        } else {
+            keys[hole] = null;
+        }
+        if (values instanceof Object[]) ((Object[]) values)[hole] = null;
+        size--;
+    }
+
+    // the keys in table order, which is what range walks: a copy, so the map can change while it is walked
+    Object[] keys() {
+        Object[] result = new Object[size];
+        int count = 0;
+        for (int i = 0; i < capacity(); i++) {
+            if (isUsed(i)) result[count++] = keyAt(i);
+        }
+        return result;
+    }
+
+    // the values in the order of keys(), only needed when there are NaN keys since find() cannot reach theirs
+    Object[] values() {
+        Object[] result = new Object[size];
+        int count = 0;
+        for (int i = 0; i < capacity(); i++) {
+            if (isUsed(i)) result[count++] = valueAt(i);
+        }
+        return result;
+    }
+
+    boolean hasNaNKeys() {
+        return nans > 0;
+    }
+
+    private boolean isNaN(long key) {
+        return keyKind == Slice.FLOAT && key == NAN;
+    }
+
+    static boolean isNaN(Object key) {
+        return key instanceof Double && Double.isNaN((double) key);
+    }
+
+    private boolean isLongKeyed() {
+        return keyKind == Slice.INT || keyKind == Slice.FLOAT;
+    }
+
+    private int capacity() {
+        if (nil) return 0;
+        return isLongKeyed() ? used.length : keys.length;
+    }
+
+    private boolean isUsed(int at) {
+        return isLongKeyed() ? used[at] : keys[at] != null;
+    }
+
+    private Object keyAt(int at) {
+        switch (keyKind) {
+            case Slice.INT: return Arithmetic.box(longKeys[at]);
+            case Slice.FLOAT: return Double.longBitsToDouble(longKeys[at]);
+            default: return keys[at];
+        }
+    }
+
+    // the long an int or float key is stored as
+    private long longKey(Object key, int line) {
+        if (keyKind == Slice.INT) {
+            if (!(key instanceof Long)) throw keyError(line);
+            return (long) key;
+        }
+        if (!Arithmetic.isNumber(key)) throw keyError(line);
+        double value = Arithmetic.toDouble(key);
+        // 0 and -0 are the same key
+        return value == 0 ? 0L : Double.doubleToLongBits(value);
+    }
+
+    // the object any other key is stored as, ropes are flattened so they hash and compare as Strings
+    private Object objectKey(Object key, int line) {
+        switch (keyKind) {
+            case Slice.STRING:
+                if (!Rope.isString(key)) throw keyError(line);
+                return key.toString();
+            case Slice.BOOL:
+                if (!(key instanceof Boolean)) throw keyError(line);
+                return key;
+            default:
+                if (key == null) throw new RuntimeError(line, "Map key must not be nil.");
+                if (key instanceof Slice || key instanceof GoMap) {
+                    throw new RuntimeError(line, "Map key must be comparable.");
+                }
+                // Double.equals tells 0 from -0
+                if (key instanceof Double && (double) key == 0) return 0.0;
+                return Rope.flatten(key);
+        }
+    }
+
+    private RuntimeError keyError(int line) {
+        return new RuntimeError(line, "Key must be " + Slice.name(keyKind) + ".");
+    }
+
+    // fibonacci hashing, the high bits of the product pick the slot
+    private int home(long hash) {
+        return (int) ((hash * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    // the slot key is in or, when it is not in the map, the free slot it would go in, always a free slot for NaN
+    private int slot(long key) {
+        int mask = used.length - 1;
+        int i = home(key);
+        boolean nan = isNaN(key);
+        while (used[i] && (nan || longKeys[i] != key)) i = (i + 1) & mask;
+        return i;
+    }
+
+    private int slot(Object key) {
+        int mask = keys.length - 1;
+        int i = home(key.hashCode());
+        boolean nan = isNaN(key);
+        while (keys[i] != null && (nan || !keys[i].equals(key))) i = (i + 1) & mask;
+        return i;
+    }
+
+    // tables are kept at most two thirds full, past that linear probing makes long runs
+    private static boolean full(long count, int capacity) {
+        return count * 3 > capacity * 2L;
+    }
+
+    private void allocate(int capacity) {
+        if (isLongKeyed()) {
+            longKeys = new long[capacity];
+            used = new boolean[capacity];
+        } else {
+            keys = new Object[capacity];
+        }
+        switch (valueKind) {
+            case Slice.INT: values = new long[capacity]; break;
+            case Slice.FLOAT: values = new double[capacity]; break;
+            default: values = new Object[capacity];
+        }
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private void rehash() {
+        long[] oldLongKeys = longKeys;
+        boolean[] oldUsed = used;
+        Object[] oldKeys = keys;
+        Object oldValues = values;
+        int oldCapacity = capacity();
+        allocate(oldCapacity * 2);
+        for (int i = 0; i < oldCapacity; i++) {
+            int at;
+            if (isLongKeyed()) {
+                if (!oldUsed[i]) continue;
+                at = slot(oldLongKeys[i]);
+                used[at] = true;
+                longKeys[at] = oldLongKeys[i];
+            } else {
+                if (oldKeys[i] == null) continue;
+                at = slot(oldKeys[i]);
+                keys[at] = oldKeys[i];
+            }
+            copyValue(oldValues, i, values, at);
+        }
+    }
+
+    private void move(int from, int to) {
+        if (isLongKeyed()) {
+            longKeys[to] = longKeys[from];
+            used[to] = true;
+        } else {
+            keys[to] = keys[from];
+        }
+        copyValue(values, from, values, to);
+    }
+
+    private void copyValue(Object source, int from, Object target, int to) {
+        switch (valueKind) {
+            case Slice.INT: ((long[]) target)[to] = ((long[]) source)[from]; break;
+            case Slice.FLOAT: ((double[]) target)[to] = ((double[]) source)[from]; break;
+            default: ((Object[]) target)[to] = ((Object[]) source)[from];
+        }
+    }
+
+    // what fmt.Println prints, map[a:1 b:2] with the keys sorted as fmt sorts them
+    // entries are sorted by slot rather than looked up by key, since NaN keys cannot be looked up
+    @Override
+    public String toString() {
+        Integer[] slots = new Integer[size];
+        int count = 0;
+        for (int i = 0; i < capacity(); i++) {
+            if (isUsed(i)) slots[count++] = i;
+        }
+        Arrays.sort(slots, (a, b) -> compareKeys(keyAt(a), keyAt(b)));
+        StringBuilder text = new StringBuilder("map[");
+        for (int i = 0; i < slots.length; i++) {
+            if (i > 0) text.append(' ');
+            text.append(Interpreter.stringify(keyAt(slots[i]))).append(':');
+            text.append(Interpreter.stringify(valueAt(slots[i])));
+        }
+        return text.append(']').toString();
+    }
+
+    private static int compareKeys(Object a, Object b) {
+        if (a instanceof Long && b instanceof Long) return Long.compare((long) a, (long) b);
+        if (Arithmetic.isNumber(a) && Arithmetic.isNumber(b)) {
+            // fmt puts NaN ahead of every other number
+            if (isNaN(a) || isNaN(b)) return Boolean.compare(!isNaN(a), !isNaN(b));
+            return Double.compare(Arithmetic.toDouble(a), Arithmetic.toDouble(b));
+        }
+        if (a instanceof String && b instanceof String) return ((String) a).compareTo((String) b);
+        if (a instanceof Boolean && b instanceof Boolean) return Boolean.compare((boolean) a, (boolean) b);
+        return Interpreter.stringify(a).compareTo(Interpreter.stringify(b));
+    }
+}
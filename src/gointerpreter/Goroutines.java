@@ -0,0 +1,78 @@
+package gointerpreter;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// the goroutines of one program run
+// each goroutine is a thread, a virtual one when the JDK has them so that hundreds of thousands of mostly
+// blocked goroutines stay cheap, a platform daemon thread otherwise
+// it also counts the goroutines that are blocked on channels: once all of them are, none can ever wake up and
+// main is told about the deadlock, like Go's runtime does
+final class Goroutines {
+    private static final ThreadFactory THREADS = threadFactory();
+    private static final long LIVE = 1L << 32;
+
+    // the live goroutines in the high half and the blocked ones in the low half, so both change together
+    private final AtomicLong counts = new AtomicLong(LIVE);
+    // the goroutine that runs main, the thread that made the engine
+    private final Thread main = Thread.currentThread();
+    private volatile boolean deadlocked = false;
+
+    // Thread.ofVirtual() is looked up reflectively so the interpreter still builds and runs on older JDKs
+    private static ThreadFactory threadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            java.lang.Class<?> type = java.lang.Class.forName("java.lang.Thread$Builder");
+            return (ThreadFactory) type.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException error) {
+            return runnable -> {
+                Thread thread = new Thread(runnable, "goroutine");
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    void go(Runnable body, int line) {
+        counts.addAndGet(LIVE);
+        Thread thread = THREADS.newThread(() -> {
+            try {
+                body.run();
+            } finally {
+                check(counts.addAndGet(-LIVE));
+            }
+        });
+        try {
+            thread.start();
+        } catch (OutOfMemoryError error) {
+            counts.addAndGet(-LIVE);
+            throw new RuntimeError(line, "Cannot start another goroutine.");
+        }
+    }
+
+    // called with the locks of the channels the goroutine waits on still held, so no one can wake it first
+    void blocked() {
+        check(counts.incrementAndGet());
+    }
+
+    // called by whoever wakes a blocked goroutine, before it is woken
+    void unblocked() {
+        counts.decrementAndGet();
+    }
+
+    private void check(long counts) {
+        long live = counts >>> 32;
+        if (live > 0 && live == (counts & 0xffffffffL)) {
+            deadlocked = true;
+            LockSupport.unpark(main);
+        }
+    }
+
+    // true in main once every goroutine is blocked, the flag is cleared as main reports it
+    boolean deadlocked() {
+        if (!deadlocked || Thread.currentThread() != main) return false;
+        deadlocked = false;
+        return true;
+    }
+}
@@ -1,29 +1,110 @@
 package gointerpreter;
 
-import java.util.HashMap;
-import java.util.Map;
-
 class Instance {
-    private Class klass;
-    private final Map<String, Object> fields = new HashMap<>();
+    private static final Object[] NO_FIELDS = new Object[0];
+
+    final Class klass;
+    // field values are stored in the order they were first assigned, shape knows which index holds which name
+    private Shape shape;
+    private Object[] fields;
 
     Instance(Class klass) {
         this.klass = klass;
+        this.shape = klass.rootShape;
+        this.fields = klass.fieldCount == 0 ? NO_FIELDS : new Object[klass.fieldCount];
     }
 
     Object get(Token name) {
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
+        return get(name.lexeme, name.line);
+    }
+
+    Object get(String name, int line) {
+        int offset = shape.offset(name);
+        if (offset >= 0) return fields[offset];
+        return method(name, line);
+    }
+
+    // a property read through the site's cache, only a miss looks the name up in the shape
+    Object get(Expression.Get site) {
+        Shape.Cache cache = site.cache;
+        if (cache != null && cache.shape == shape) return fields[cache.offset];
+        int offset = shape.offset(site.name.lexeme);
+        if (offset >= 0) {
+            site.cache = new Shape.Cache(shape, offset, null);
+            return fields[offset];
         }
+        return method(site.name.lexeme, site.name.line);
+    }
+
+    // the method a call site invokes on this instance, or null when the name is a field or is undefined
+    Function method(Expression.Call site, String name) {
+        Shape shape = this.shape;
+        for (Shape.MethodCache entry = site.methods; entry != null; entry = entry.next) {
+            if (entry.shape == shape) return entry.method;
+        }
+        if (shape.offset(name) >= 0) return null;
+        Function method = klass.findMethod(name);
+        Shape.MethodCache entries = site.methods;
+        if (method != null) {
+            if (entries != null && entries.size >= Shape.MethodCache.LIMIT) entries = null;
+            site.methods = new Shape.MethodCache(shape, method, entries);
+        }
+        return method;
+    }
 
-        Function method = klass.findMethod(this, name.lexeme);
+    Function method(String name) {
+        if (shape.offset(name) >= 0) return null;
+        return klass.findMethod(name);
+    }
+
+    private Object method(String name, int line) {
+        Function method = klass.findMethod(this, name);
         if (method != null) return method;
 
-        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+        throw new RuntimeError(line, "Undefined property '" + name + "'.");
     }
 
     void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+        set(name.lexeme, value);
+    }
+
+    void set(String name, Object value) {
+        int offset = shape.offset(name);
+        if (offset < 0) offset = addField(shape.withField(name));
+        fields[offset] = value;
+    }
+
+    void set(Expression.Set site, Object value) {
+        Shape.Cache cache = site.cache;
+        if (cache != null && cache.shape == shape) {
+            if (cache.next != null) addField(cache.next);
+            fields[cache.offset] = value;
+            return;
+        }
+        Shape before = shape;
+        int offset = shape.offset(site.name.lexeme);
+        Shape next = null;
+        if (offset < 0) {
+            next = shape.withField(site.name.lexeme);
+            offset = addField(next);
+        }
+        site.cache = new Shape.Cache(before, offset, next);
+        fields[offset] = value;
+    }
+
+    // moves the instance to next, which has one field more, and returns that field's offset
+    private int addField(Shape next) {
+        int offset = next.size - 1;
+        if (offset >= fields.length) {
+            // later instances of the class start out with room for every field seen so far
+            int length = Math.max(next.size, klass.fieldCount);
+            Object[] grown = new Object[length];
+            System.arraycopy(fields, 0, grown, 0, fields.length);
+            fields = grown;
+            if (klass.fieldCount < next.size) klass.fieldCount = next.size;
+        }
+        shape = next;
+        return offset;
     }
 
     @Override
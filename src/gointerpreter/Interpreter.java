@@ -1,16 +1,56 @@
 package gointerpreter;
 
-import java.lang.Integer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class Interpreter implements Expression.Visitor<Object>, Statement.Visitor<Void>{
-    final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expression, Integer> locals = new HashMap<>();
-
-    Interpreter() {}
+public class Interpreter implements Expression.Visitor<Object>, Statement.Visitor<Completion>{
+    // an interpreter runs one goroutine, the ones started by go statements share everything but the environment
+    final Environment globals;
+    private Environment environment;
+    private final Goroutines goroutines;
+    // the value of the last return statement, valid while a RETURN completion travels up to its call
+    private Object returnValue;
+    // the label of a BREAK or CONTINUE completion on its way out to the loop it names, null for the innermost
+    private String jumpLabel;
+    // the line of the call made last, where a stack overflow is reported
+    private int callLine;
+    // operator expressions rewrite themselves into type-specialized nodes, see Specialization
+    private final boolean specialize;
+    // where the program prints, each run has its own so runs do not share their output
+    private final Output out;
+    private final ErrorReporter reporter;
+    // the compiling tier, null when it is off
+    final Jit jit;
+    // the function whose body is being walked, its loop iterations count towards compiling it
+    private Statement.Function running;
+
+    Interpreter(ErrorReporter reporter, boolean specialize) {
+        this(reporter, specialize, null);
+    }
+
+    Interpreter(ErrorReporter reporter, boolean specialize, Jit jit) {
+        this.out = reporter.out;
+        this.reporter = reporter;
+        this.specialize = specialize;
+        this.jit = jit;
+        this.globals = new Environment();
+        this.environment = globals;
+        this.goroutines = new Goroutines();
+        Builtin.define(globals);
+    }
+
+    private Interpreter(Interpreter parent) {
+        this.out = parent.out;
+        this.reporter = parent.reporter;
+        this.specialize = parent.specialize;
+        this.jit = parent.jit;
+        this.globals = parent.globals;
+        this.environment = globals;
+        this.goroutines = parent.goroutines;
+    }
 
     void interpret(List<Statement> statements) {
         try {
@@ -18,49 +58,94 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
                 execute(statement);
             }
         } catch (RuntimeError error) {
-            Main.runtimeError(error);
+            // blocks do not restore their environment when an error unwinds through them
+            environment = globals;
+            reporter.runtimeError(error);
+        } finally {
+            out.flush();
         }
     }
 
-    private void execute(Statement statement) {
-        statement.accept(this);
+    private Completion execute(Statement statement) {
+        return statement.accept(this);
     }
 
-    void executeBlock(List<Statement> statements, Environment environment) {
+    Completion executeBlock(List<Statement> statements, Environment environment) {
         Environment previous = this.environment;
-        try {
-            this.environment = environment;
-            for (Statement statement : statements) {
-                execute(statement);
+        this.environment = environment;
+        for (Statement statement : statements) {
+            Completion completion = execute(statement);
+            if (completion != Completion.NORMAL) {
+                this.environment = previous;
+                return completion;
             }
-        } finally {
-            this.environment = previous;
         }
+        this.environment = previous;
+        return Completion.NORMAL;
+    }
+
+    // the body of a call that is not compiled
+    Completion executeBody(Statement.Function function, Environment environment) {
+        if (jit == null) return executeBlock(function.body, environment);
+        Statement.Function caller = running;
+        running = function;
+        Completion completion = executeBlock(function.body, environment);
+        running = caller;
+        return completion;
+    }
+
+    // what compiled code leaves to the interpreter is run in the environment the compiled code is in
+    Completion executeIn(Statement statement, Environment environment) {
+        Environment previous = this.environment;
+        this.environment = environment;
+        Completion completion = execute(statement);
+        this.environment = previous;
+        return completion;
+    }
+
+    Object evaluateIn(Expression expression, Environment environment) {
+        Environment previous = this.environment;
+        this.environment = environment;
+        Object value = evaluate(expression);
+        this.environment = previous;
+        return value;
+    }
+
+    // hands the value of a RETURN completion to the call that receives it
+    Object takeReturnValue() {
+        Object value = returnValue;
+        returnValue = null;
+        return value;
     }
 
-    private Object evaluate(Expression expression) {
+    Object evaluate(Expression expression) {
         return expression.accept(this);
     }
 
-    void resolve(Expression expression, int depth) {
-        locals.put(expression, depth);
+    // a slot of -1 means the Resolver saw the declaration at the top level
+    private void declare(int slot, Token name, Object value) {
+        if (slot < 0) {
+            environment.define(name.lexeme, value);
+        } else {
+            environment.slots[slot] = value;
+        }
     }
 
-    public Void visitBlockStatement(Statement.Block statement) {
-        executeBlock(statement.statements, new Environment(environment));
-        return null;
+    public Completion visitBlockStatement(Statement.Block statement) {
+        if (!statement.hasScope()) return executeBlock(statement.statements, environment);
+        return executeBlock(statement.statements, new Environment(environment, statement.slotCount));
     }
 
-    public Void visitClassStatement(Statement.Class statement) {
-        environment.define(statement.name.lexeme, null);
+    public Completion visitClassStatement(Statement.Class statement) {
+        declare(statement.slot, statement.name, null);
         Object superclass = null;
         if (statement.superclass != null) {
             superclass = evaluate(statement.superclass);
             if (!(superclass instanceof Class)) {
                 throw new RuntimeError(statement.name, "Superclass must be a class.");
             }
-            environment = new Environment(environment);
-            environment.define("super", superclass);
+            environment = new Environment(environment, 1);
+            environment.slots[0] = superclass;
         }
         Map<String, Function> methods = new HashMap<>();
         for (Statement.Function method : statement.methods) {
@@ -71,76 +156,256 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         if (superclass != null) {
             environment = environment.enclosing;
         }
-        environment.assign(statement.name, klass);
-        return null;
+        if (statement.slot < 0) {
+            environment.assign(statement.name, klass);
+        } else {
+            environment.slots[statement.slot] = klass;
+        }
+        return Completion.NORMAL;
     }
 
-    public Void visitFunctionStatement(Statement.Function statement) {
+    public Completion visitFunctionStatement(Statement.Function statement) {
         Function function = new Function(statement, environment, false);
-        environment.define(statement.name.lexeme, function);
-        return null;
+        declare(statement.slot, statement.name, function);
+        return Completion.NORMAL;
     }
 
-    public Void visitExpressionStatement(Statement.ExpressionStmt statement) {
+    public Completion visitExpressionStatement(Statement.ExpressionStmt statement) {
         evaluate(statement.expression);
-        return null;
+        return Completion.NORMAL;
     }
 
-    public Void visitIfStatement(Statement.If statement) {
+    public Completion visitIfStatement(Statement.If statement) {
         if (isTruth(evaluate(statement.condition))) {
-            execute(statement.thenBranch);
+            return execute(statement.thenBranch);
         } else if (statement.elseBranch != null) {
-            execute(statement.elseBranch);
+            return execute(statement.elseBranch);
         }
-        return null;
+        return Completion.NORMAL;
     }
 
-    public Void visitPrintStatement(Statement.Print statement) {
-        Object value = evaluate(statement.expression);
-        System.out.println(stringify(value));
-        return null;
+    public Completion visitPrintStatement(Statement.Print statement) {
+        print(evaluate(statement.expression));
+        return Completion.NORMAL;
+    }
+
+    void print(Object value) {
+        out.println(value);
     }
 
-    public Void visitReturnStatement(Statement.Return statement) {
+    public Completion visitReturnStatement(Statement.Return statement) {
         Object value = null;
-        if (statement.value != null) value = evaluate(statement.value);
-        throw new Return(value);
+        if (isTailCall(statement)) {
+            value = tailCall((Expression.Call) statement.value);
+        } else if (statement.value != null) {
+            value = evaluate(statement.value);
+        }
+        returnValue = value;
+        return Completion.RETURN;
+    }
+
+    // return f(...), where f is called by a plain function call rather than as a method: both engines run
+    // the callee in place of the returning function, so tail recursion does not grow the stack
+    static boolean isTailCall(Statement.Return statement) {
+        return statement.value instanceof Expression.Call
+                && !(((Expression.Call) statement.value).call instanceof Expression.Get);
     }
 
-    public Void visitVarStatement(Statement.Var statement) {
+    // a function is not called here but handed back to Function.invoke, which calls it once this frame is gone
+    private Object tailCall(Expression.Call expression) {
+        Object callee = evaluate(expression.call);
+        List<Object> arguments = evaluateArguments(expression);
+        if (!(callee instanceof Function) || callee instanceof Closure) return call(expression, callee, arguments);
+        checkArity(expression, (Function) callee, arguments);
+        return new Function.TailCall((Function) callee, arguments);
+    }
+
+    // the same for compiled code, which evaluated the callee and the arguments itself
+    Object tailCall(Expression.Call expression, Object callee, Object[] arguments) {
+        List<Object> list = new ArrayList<>(Arrays.asList(arguments));
+        if (!(callee instanceof Function) || callee instanceof Closure) return call(expression, callee, list);
+        checkArity(expression, (Function) callee, list);
+        return new Function.TailCall((Function) callee, list);
+    }
+
+    public Completion visitBreakStatement(Statement.Break statement) {
+        jumpLabel = statement.label == null ? null : statement.label.lexeme;
+        return Completion.BREAK;
+    }
+
+    public Completion visitContinueStatement(Statement.Continue statement) {
+        jumpLabel = statement.label == null ? null : statement.label.lexeme;
+        return Completion.CONTINUE;
+    }
+
+    // whether a BREAK or CONTINUE out of a loop's body is for that loop, a labelled one for another loop
+    // leaves this one and goes on up
+    private boolean isFor(Token label) {
+        if (jumpLabel == null) return true;
+        if (label == null || !label.lexeme.equals(jumpLabel)) return false;
+        jumpLabel = null;
+        return true;
+    }
+
+    public Completion visitVarStatement(Statement.Var statement) {
         Object value = null;
         if (statement.initializer != null) {
             value = evaluate(statement.initializer);
         }
-        environment.define(statement.name.lexeme, value);
-        return null;
+        declare(statement.slot, statement.name, value);
+        return Completion.NORMAL;
     }
 
-    public Void visitInitializerStatement(Statement.Initializer statement) {
+    public Completion visitInitializerStatement(Statement.Initializer statement) {
         Object value = null;
         if (statement.initializer != null) {
             value = evaluate(statement.initializer);
         }
-        environment.define(statement.name.lexeme, value);
-        return null;
+        declare(statement.slot, statement.name, value);
+        return Completion.NORMAL;
     }
 
-    public Void visitForStatement(Statement.For statement) {
+    public Completion visitForStatement(Statement.For statement) {
         if (statement.initializer != null) {
             execute(statement.initializer);
         }
         while (isTruth(evaluate(statement.condition))) {
-            execute(statement.body);
-            evaluate(statement.increment);
+            if (running != null) Jit.backEdge(running);
+            Completion completion = execute(statement.body);
+            if (completion == Completion.RETURN) return completion;
+            if (completion != Completion.NORMAL && !isFor(statement.label)) return completion;
+            if (completion == Completion.BREAK) break;
+            if (statement.increment != null) evaluate(statement.increment);
         }
-        return null;
+        return Completion.NORMAL;
     }
 
-    public Void visitWhileStatement(Statement.While statement) {
+    public Completion visitWhileStatement(Statement.While statement) {
         while (isTruth(evaluate(statement.condition))) {
-            execute(statement.body);
+            if (running != null) Jit.backEdge(running);
+            Completion completion = execute(statement.body);
+            if (completion == Completion.RETURN) return completion;
+            if (completion != Completion.NORMAL && !isFor(statement.label)) return completion;
+            if (completion == Completion.BREAK) break;
         }
-        return null;
+        return Completion.NORMAL;
+    }
+
+    public Completion visitGoStatement(Statement.Go statement) {
+        Expression.Call call = statement.call;
+        Object callee = evaluate(call.call);
+        List<Object> arguments = evaluateArguments(call);
+        if (!(callee instanceof Callable)) {
+            throw new RuntimeError(call.name, "Can only call functions and classes.");
+        }
+        checkArity(call, (Callable) callee, arguments);
+        Interpreter goroutine = new Interpreter(this);
+        goroutines.go(() -> goroutine.run(call, callee, arguments), statement.keyword.line);
+        return Completion.NORMAL;
+    }
+
+    // the body of a goroutine, whose runtime errors end only that goroutine
+    private void run(Expression.Call expression, Object callee, List<Object> arguments) {
+        try {
+            call(expression, callee, arguments);
+        } catch (RuntimeError error) {
+            reporter.runtimeError(error);
+        } catch (StackOverflowError error) {
+            reporter.runtimeError(stackOverflow());
+        }
+    }
+
+    public Completion visitSendStatement(Statement.Send statement) {
+        Object channel = evaluate(statement.channel);
+        Object value = evaluate(statement.value);
+        if (channel == null) Channel.block(goroutines, statement.arrow.line);
+        channel(channel, statement.arrow).send(value, goroutines, statement.arrow.line);
+        return Completion.NORMAL;
+    }
+
+    public Completion visitSelectStatement(Statement.Select statement) {
+        int count = statement.cases.size();
+        Channel[] channels = new Channel[count];
+        Object[] values = new Object[count];
+        Statement.Select.Case defaultCase = null;
+        for (int i = 0; i < count; i++) {
+            Statement.Select.Case selectCase = statement.cases.get(i);
+            if (selectCase.channel == null) {
+                defaultCase = selectCase;
+                continue;
+            }
+            Object channel = evaluate(selectCase.channel);
+            if (channel != null) channels[i] = channel(channel, statement.keyword);
+            values[i] = selectCase.value == null ? Channel.RECEIVE : evaluate(selectCase.value);
+        }
+        int index = Channel.select(channels, values, defaultCase != null, goroutines, statement.keyword.line);
+        Statement.Select.Case selected = index < 0 ? defaultCase : statement.cases.get(index);
+        Object received = index < 0 ? null : values[index];
+        Environment previous = environment;
+        if (selected.declare) environment = new Environment(previous, selected.slotCount);
+        bind(selected.target, false, index < 0 ? null : channels[index].valueOf(received));
+        bind(selected.ok, false, received != Channel.CLOSED);
+        // break leaves the select, a labelled break, continue and return go on to the enclosing loop or function
+        Completion completion = execute(selected.body);
+        environment = previous;
+        return completion == Completion.BREAK && jumpLabel == null ? Completion.NORMAL : completion;
+    }
+
+    public Completion visitLookupStatement(Statement.Lookup statement) {
+        if (statement.source instanceof Expression.Receive) {
+            Expression.Receive receive = (Expression.Receive) statement.source;
+            Object channel = evaluate(receive.channel);
+            if (channel == null) Channel.block(goroutines, receive.arrow.line);
+            Channel source = channel(channel, receive.arrow);
+            Object received = source.receiveOrClosed(goroutines, receive.arrow.line);
+            bind(statement.value, statement.declare, source.valueOf(received));
+            bind(statement.ok, statement.declare, received != Channel.CLOSED);
+            return Completion.NORMAL;
+        }
+        Expression.Index index = (Expression.Index) statement.source;
+        Object object = evaluate(index.object);
+        Object key = evaluate(index.index);
+        int line = index.bracket.line;
+        GoMap map = GoMap.cast(object, line);
+        int at = map.find(key, line);
+        bind(statement.value, statement.declare, at < 0 ? map.zero : map.valueAt(at));
+        bind(statement.ok, statement.declare, at >= 0);
+        return Completion.NORMAL;
+    }
+
+    // stores a value in a target of := or =, one that := declared at the top level is a new global
+    private void bind(Expression.Variable target, boolean declare, Object value) {
+        if (target == null) return;
+        if (declare && target.depth == Expression.GLOBAL) {
+            globals.define(target.name.lexeme, value);
+        } else {
+            assign(target, value);
+        }
+    }
+
+    public Completion visitRangeStatement(Statement.Range statement) {
+        RangeIterator iterator = RangeIterator.of(evaluate(statement.object), goroutines, statement.keyword.line);
+        Environment previous = environment;
+        while (iterator.next()) {
+            if (running != null) Jit.backEdge(running);
+            // with := every iteration has variables of its own, as in Go
+            if (statement.declare) environment = new Environment(previous, statement.slotCount);
+            bind(statement.key, false, iterator.key);
+            bind(statement.value, false, iterator.value);
+            Completion completion = execute(statement.body);
+            environment = previous;
+            if (completion == Completion.RETURN) return completion;
+            if (completion != Completion.NORMAL && !isFor(statement.label)) return completion;
+            if (completion == Completion.BREAK) break;
+        }
+        return Completion.NORMAL;
+    }
+
+    private Channel channel(Object value, Token token) {
+        if (!(value instanceof Channel)) {
+            throw new RuntimeError(token, "Operand must be a channel.");
+        }
+        return (Channel) value;
     }
 
     ///////////////////////////////////////////////////////////////
@@ -151,66 +416,64 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
 
     public Object visitAssignExpression(Expression.Assign expression) {
         Object value = evaluate(expression.value);
-        Integer distance = locals.get(expression);
-        if (distance != null) {
-            environment.assignAt(distance, expression.name, value);
+        if (expression.depth != Expression.GLOBAL) {
+            environment.assignAt(expression.depth, expression.slot, value);
         } else {
             globals.assign(expression.name, value);
         }
         return value;
     }
 
+    private void assign(Expression.Variable target, Object value) {
+        if (target.depth != Expression.GLOBAL) {
+            environment.assignAt(target.depth, target.slot, value);
+        } else {
+            globals.assign(target.name, value);
+        }
+    }
+
     public Object visitBinaryExpression(Expression.Binary expression) {
         Object left = evaluate(expression.left);
         Object right = evaluate(expression.right);
-        switch (expression.operator.tokenType) {
+        if (specialize) return Specialization.executeBinary(expression, left, right);
+        return binary(expression.operator, left, right);
+    }
+
+    static Object binary(Token operator, Object left, Object right) {
+        int line = operator.line;
+        switch (operator.tokenType) {
             case BANG_EQUAL: return !isEqual(left, right);
             case EQUAL_EQUAL: return isEqual(left, right);
-            case GREATER:
-                checkNumberOperand(expression.operator, left, right);
-                return (double) left > (double) right;
-            case LESS:
-                checkNumberOperand(expression.operator, left, right);
-                return (double) left < (double) right;
-            case GREATER_EQUAL:
-                checkNumberOperand(expression.operator, left, right);
-                return (double) left >= (double) right;
-            case LESS_EQUAL:
-                checkNumberOperand(expression.operator, left, right);
-                return (double) left <= (double) right;
-            case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left + (double) right;
-                }
-                if (left instanceof String && right instanceof String) {
-                    return (String) left + (String) right;
-                }
-                throw new RuntimeError(expression.operator, "Operands must be two numbers or two strings.");
-            case MINUS:
-                checkNumberOperand(expression.operator, left, right);
-                return (double) left - (double) right;
-            case STAR:
-                checkNumberOperand(expression.operator, left, right);
-                return (double) left * (double) right;
-            case SLASH:
-                checkNumberOperand(expression.operator, left, right);
-                if ((double) right == 0) throw new RuntimeError(expression.operator, "Cannot divide by zero.");
-                return (double) left / (double) right;
+            case GREATER: return Arithmetic.greater(left, right, line);
+            case LESS: return Arithmetic.less(left, right, line);
+            case GREATER_EQUAL: return Arithmetic.greaterEqual(left, right, line);
+            case LESS_EQUAL: return Arithmetic.lessEqual(left, right, line);
+            case PLUS: return Arithmetic.add(left, right, line);
+            case MINUS: return Arithmetic.subtract(left, right, line);
+            case STAR: return Arithmetic.multiply(left, right, line);
+            case SLASH: return Arithmetic.divide(left, right, line);
+            case PERCENT: return Arithmetic.modulo(left, right, line);
         }
         return null;
     }
 
     public Object visitUnaryExpression(Expression.Unary expression) {
         Object right = evaluate(expression.right);
-        switch (expression.operator.tokenType) {
+        if (specialize) return Specialization.executeUnary(expression, right);
+        return unary(expression.operator, right);
+    }
+
+    static Object unary(Token operator, Object right) {
+        switch (operator.tokenType) {
             case BANG:
                 return !isTruth(right);
             case MINUS:
-                checkNumberOperand(expression.operator, right);
-                return -(double) right;
+                return Arithmetic.negate(right, operator.line);
             case PLUS:
-                checkNumberOperand(expression.operator, right);
-                return +(double) right;
+                if (!Arithmetic.isNumber(right)) {
+                    throw new RuntimeError(operator, "Operand must be a number.");
+                }
+                return right;
         }
         return null;
     }
@@ -226,25 +489,74 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
     }
 
     public Object visitCallExpression(Expression.Call expression) {
+        callLine = expression.name.line;
+        if (expression.call instanceof Expression.Get) {
+            return callMethod(expression, (Expression.Get) expression.call);
+        }
         Object call = evaluate(expression.call);
+        return call(expression, call, evaluateArguments(expression));
+    }
+
+    // recursion deeper than the --stack budget, reported at the call made last
+    // the StackOverflowError is only caught where the thread running the script starts, once it has unwound
+    // everything, so nothing runs on after it in code it may have left half done
+    RuntimeError stackOverflow() {
+        return new RuntimeError(callLine, "Stack overflow.");
+    }
+
+    // object.name(...) invokes the method found through the site's cache with object as its receiver,
+    // instead of materializing a bound method only to call it once
+    private Object callMethod(Expression.Call expression, Expression.Get callee) {
+        Object object = evaluate(callee.object);
+        if (!(object instanceof Instance)) {
+            throw new RuntimeError(callee.name, "Only instances have properties.");
+        }
+        Instance instance = (Instance) object;
+        Function method = instance.method(expression, callee.name.lexeme);
+        if (method == null) {
+            // a field holding something callable, or an undefined property
+            Object call = instance.get(callee);
+            return call(expression, call, evaluateArguments(expression));
+        }
+        List<Object> arguments = evaluateArguments(expression);
+        checkArity(expression, method, arguments);
+        return method.invoke(this, instance, arguments);
+    }
+
+    // a call made by compiled code, which evaluated the callee and the arguments itself
+    Object call(Expression.Call expression, Object callee, Object[] arguments) {
+        callLine = expression.name.line;
+        return call(expression, callee, Arrays.asList(arguments));
+    }
+
+    private List<Object> evaluateArguments(Expression.Call expression) {
         List<Object> arguments = new java.util.ArrayList<>();
         for (Expression argument : expression.arguments) {
             arguments.add(evaluate(argument));
         }
+        return arguments;
+    }
+
+    private Object call(Expression.Call expression, Object call, List<Object> arguments) {
         if (!(call instanceof Callable)) {
             throw new RuntimeError(expression.name, "Can only call functions and classes.");
         }
         Callable function = (Callable) call;
-        if (arguments.size() != function.arity()) {
+        checkArity(expression, function, arguments);
+        if (function instanceof Builtin) return ((Builtin) function).call(arguments, expression.name.line);
+        return function.call(this, arguments);
+    }
+
+    private void checkArity(Expression.Call expression, Callable function, List<Object> arguments) {
+        if (function.arity() != Builtin.VARIADIC && arguments.size() != function.arity()) {
             throw new RuntimeError(expression.name, "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
         }
-        return function.call(this, arguments);
     }
 
     public Object visitGetExpression(Expression.Get expression) {
         Object object = evaluate(expression.object);
         if (object instanceof Instance) {
-            return ((Instance) object).get(expression.name);
+            return ((Instance) object).get(expression);
         }
         throw new RuntimeError(expression.name, "Only instances have properties.");
     }
@@ -255,7 +567,7 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
             throw new RuntimeError(expression.name, "Only instances have fields.");
         }
         Object value = evaluate(expression.value);
-        ((Instance) object).set(expression.name, value);
+        ((Instance) object).set(expression, value);
         return value;
     }
 
@@ -272,9 +584,8 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
     }
 
     public Object visitSuperExpression(Expression.Super expression) {
-        int distance = locals.get(expression);
-        Class superclass = (Class) environment.getAt(distance, "super");
-        Instance object = (Instance) environment.getAt(distance - 1, "this");
+        Class superclass = (Class) environment.getAt(expression.depth, 0);
+        Instance object = (Instance) environment.getAt(expression.thisDepth, 0);
         Function method = superclass.findMethod(object, expression.method.lexeme);
         if (method == null) {
             throw new RuntimeError(expression.method, "Undefined property '" + expression.method.lexeme + "'.");
@@ -282,38 +593,120 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         return method.bind(object);
     }
 
-    private void checkNumberOperand(Token operator, Object operand) {
-        if (operand instanceof Double) return;
-        throw new RuntimeError(operator, "Operand must be a number.");
+    public Object visitReceiveExpression(Expression.Receive expression) {
+        Object channel = evaluate(expression.channel);
+        if (channel == null) Channel.block(goroutines, expression.arrow.line);
+        return channel(channel, expression.arrow).receive(goroutines, expression.arrow.line);
     }
 
-    private void checkNumberOperand(Token operator, Object left, Object right) {
-        if (left instanceof Double && right instanceof Double) return;
-        throw new RuntimeError(operator, "Operands must be numbers.");
+    public Object visitMakeExpression(Expression.Make expression) {
+        List<Object> arguments = new ArrayList<>();
+        for (Expression argument : expression.arguments) {
+            arguments.add(evaluate(argument));
+        }
+        int line = expression.keyword.line;
+        if (expression.kind == TokenType.LEFT_BRACKET) {
+            return Slice.make(expression.element, arguments.get(0), arguments.size() > 1 ? arguments.get(1) : null, line);
+        }
+        long capacity = 0;
+        if (!arguments.isEmpty()) capacity = size(arguments.get(0), line);
+        return new Channel((int) capacity, Slice.zero(expression.element));
     }
 
-    private Object lookUpVariable(Token name, Expression expr) {
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
+    public Object visitIndexExpression(Expression.Index expression) {
+        Object object = evaluate(expression.object);
+        Object index = evaluate(expression.index);
+        return index(object, index, expression.bracket.line);
+    }
+
+    public Object visitSetIndexExpression(Expression.SetIndex expression) {
+        Object object = evaluate(expression.object);
+        Object index = evaluate(expression.index);
+        Object value = evaluate(expression.value);
+        setIndex(object, index, value, expression.bracket.line);
+        return value;
+    }
+
+    // slice[index] and map[key], for both engines
+    static Object index(Object object, Object index, int line) {
+        if (object instanceof GoMap) return ((GoMap) object).get(index, line);
+        if (object instanceof Slice) return ((Slice) object).get(index, line);
+        throw new RuntimeError(line, "Operand must be a slice or a map.");
+    }
+
+    static void setIndex(Object object, Object index, Object value, int line) {
+        if (object instanceof GoMap) {
+            ((GoMap) object).put(index, value, line);
+        } else if (object instanceof Slice) {
+            ((Slice) object).set(index, value, line);
+        } else {
+            throw new RuntimeError(line, "Operand must be a slice or a map.");
+        }
+    }
+
+    public Object visitSlicingExpression(Expression.Slicing expression) {
+        Object object = evaluate(expression.object);
+        Object low = expression.low == null ? null : evaluate(expression.low);
+        Object high = expression.high == null ? null : evaluate(expression.high);
+        int line = expression.bracket.line;
+        return Slice.cast(object, line).slice(low, high, line);
+    }
+
+    public Object visitSliceLiteralExpression(Expression.SliceLiteral expression) {
+        Object[] elements = new Object[expression.elements.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = evaluate(expression.elements.get(i));
+        }
+        return Slice.of(expression.kind, expression.length, elements, expression.bracket.line);
+    }
+
+    public Object visitMapLiteralExpression(Expression.MapLiteral expression) {
+        int line = expression.keyword.line;
+        Object size = expression.size == null ? Arithmetic.box(expression.keys.size()) : evaluate(expression.size);
+        GoMap map = GoMap.make(expression.type, size, line);
+        for (int i = 0; i < expression.keys.size(); i++) {
+            Object key = evaluate(expression.keys.get(i));
+            map.put(key, evaluate(expression.values.get(i)), line);
+        }
+        return map;
+    }
+
+    static long size(Object value, int line) {
+        if (!(value instanceof Long) || (long) value < 0 || (long) value > Integer.MAX_VALUE) {
+            throw new RuntimeError(line, "Size must be a non-negative int.");
+        }
+        return (long) value;
+    }
+
+    private Object lookUpVariable(Token name, Expression.Resolvable expression) {
+        if (expression.depth != Expression.GLOBAL) {
+            return environment.getAt(expression.depth, expression.slot);
         } else {
             return globals.get(name);
         }
     }
 
-    private boolean isTruth(Object object) {
+    static boolean isTruth(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean) object;
         return true;
     }
 
-    private boolean isEqual(Object a, Object b) {
+    static boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
-        if (a == null) return false;
-        return a.equals(b);
+        // a nil slice or map is equal to nil
+        if (a == null) return isNil(b);
+        if (b == null) return isNil(a);
+        if (Arithmetic.isNumber(a) && Arithmetic.isNumber(b)) return Arithmetic.numbersEqual(a, b);
+        return Rope.flatten(a).equals(Rope.flatten(b));
+    }
+
+    private static boolean isNil(Object value) {
+        if (value instanceof Slice) return ((Slice) value).isNil();
+        return value instanceof GoMap && ((GoMap) value).isNil();
     }
 
-    private String stringify(Object object) {
+    static String stringify(Object object) {
         if (object == null) return "nil";
         if (object instanceof Double) {
             String text = object.toString();
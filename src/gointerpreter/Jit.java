@@ -0,0 +1,87 @@
+package gointerpreter;
+
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// the compiling tier of the tree-walker: every call of a function and every iteration of a loop in it count
+// towards the threshold, past it the function is translated to a JVM class by JitCompiler and its later calls
+// run that instead of walking the tree, so HotSpot compiles and inlines them like any other Java code
+// the compiled code belongs to the Statement.Function and not to one run, it holds no state of its own
+final class Jit {
+    static final int DEFAULT_THRESHOLD = 1000;
+    private static final AtomicInteger classCount = new AtomicInteger();
+
+    // the body of a compiled function, run with the environment of the call, what it returns is the result
+    interface Code {
+        Object run(Interpreter interpreter, Environment environment);
+    }
+
+    private final int threshold;
+    // where the compiled functions are listed, null when they are not
+    private final PrintStream log;
+
+    Jit(int threshold, PrintStream log) {
+        this.threshold = threshold;
+        this.log = log;
+    }
+
+    // the compiled body of the function, or null while it is interpreted, each call counts towards compiling it
+    Code code(Statement.Function function) {
+        Code code = function.compiled;
+        if (code != null) return code;
+        if (++function.heat < threshold) return null;
+        return compile(function);
+    }
+
+    // a loop iteration in the function
+    static void backEdge(Statement.Function function) {
+        function.heat++;
+    }
+
+    // goroutines may get here at the same time, only one of them compiles
+    private Code compile(Statement.Function function) {
+        synchronized (function) {
+            if (function.compiled != null) return function.compiled;
+            if (function.heat < threshold) return null;
+            String name = function.name.lexeme;
+            JitCompiler compiler = new JitCompiler(function, "gointerpreter/JitCode" + classCount.incrementAndGet() + "$" + name);
+            try {
+                byte[] bytes = compiler.compile();
+                Code code = (Code) define(bytes).getDeclaredConstructor(Object[].class)
+                        .newInstance((Object) compiler.constants());
+                if (log != null) {
+                    log.println("jit: compiled " + name + " (line " + function.name.line + ") after " + function.heat
+                            + " calls and loop iterations, " + bytes.length + " bytes, "
+                            + compiler.fallbacks + " nodes left to the interpreter");
+                }
+                function.compiled = code;
+                return code;
+            } catch (RuntimeException | LinkageError | ReflectiveOperationException error) {
+                // the function stays interpreted for good
+                function.heat = Integer.MIN_VALUE;
+                if (log != null) log.println("jit: cannot compile " + name + " (line " + function.name.line + "): " + error);
+                return null;
+            }
+        }
+    }
+
+    // a hidden class when the JDK has them, which is unloaded with the code that uses it, an ordinary class
+    // defined through the same lookup otherwise
+    // defineHiddenClass is looked up reflectively so the interpreter still builds and runs on older JDKs
+    private static java.lang.Class<?> define(byte[] bytes) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Object options;
+        Method defineHidden;
+        try {
+            java.lang.Class<?> option = java.lang.Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            options = Array.newInstance(option, 0);
+            defineHidden = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, options.getClass());
+        } catch (ClassNotFoundException | NoSuchMethodException error) {
+            return lookup.defineClass(bytes);
+        }
+        return ((MethodHandles.Lookup) defineHidden.invoke(lookup, bytes, true, options)).lookupClass();
+    }
+}
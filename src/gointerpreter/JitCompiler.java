@@ -0,0 +1,627 @@
+package gointerpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// translates the body of a hot function to a class implementing Jit.Code, for the jit tier of the tree-walker
+// locals stay in Environment slots, with the current scope in a JVM local, and values stay boxed, but every
+// node becomes straight line code calling Arithmetic and the interpreter's static helpers, with no visitor
+// dispatch and no Completion checks, which HotSpot can then inline across
+// whatever is not translated, like method calls, channels or range loops, is handed to the interpreter as
+// the tree node, run in the current environment; a statement that returns, breaks or continues that way
+// makes the compiled code do the same
+final class JitCompiler implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+    private static final String OBJECT = "java/lang/Object";
+    private static final String BOOLEAN = "java/lang/Boolean";
+    private static final String INTERPRETER = "gointerpreter/Interpreter";
+    private static final String ENVIRONMENT = "gointerpreter/Environment";
+    private static final String ARITHMETIC = "gointerpreter/Arithmetic";
+    private static final String COMPLETION = "gointerpreter/Completion";
+    private static final String INTERPRETER_TYPE = "Lgointerpreter/Interpreter;";
+    private static final String ENVIRONMENT_TYPE = "Lgointerpreter/Environment;";
+    private static final String BINARY = "(Ljava/lang/Object;Ljava/lang/Object;I)Ljava/lang/Object;";
+    private static final String COMPARISON = "(Ljava/lang/Object;Ljava/lang/Object;I)Z";
+
+    // the locals of run(): this, the interpreter and the environment of the current scope
+    private static final int INTERPRETER_LOCAL = 1;
+    private static final int ENVIRONMENT_LOCAL = 2;
+
+    // the loop that break and continue in the code being translated leave or restart
+    private static final class Loop {
+        final Loop enclosing;
+        final ClassFileWriter.Label breakTarget;
+        final ClassFileWriter.Label continueTarget;
+        // the local holding the environment of the loop's scope, restored when the body is left by a jump
+        final int environment;
+
+        Loop(Loop enclosing, ClassFileWriter.Label breakTarget, ClassFileWriter.Label continueTarget, int environment) {
+            this.enclosing = enclosing;
+            this.breakTarget = breakTarget;
+            this.continueTarget = continueTarget;
+            this.environment = environment;
+        }
+    }
+
+    private final Statement.Function function;
+    private final String className;
+    private final ClassFileWriter file;
+    private ClassFileWriter.Code code;
+    // the nodes and values the compiled code needs, handed to the constructor of the class
+    private final List<Object> constants = new ArrayList<>();
+    private Loop loop = null;
+    // how many nodes are left to the interpreter, for the log
+    int fallbacks = 0;
+
+    JitCompiler(Statement.Function function, String className) {
+        this.function = function;
+        this.className = className;
+        this.file = new ClassFileWriter(className, OBJECT, "gointerpreter/Jit$Code");
+    }
+
+    // the class file, to be instantiated with constants()
+    byte[] compile() {
+        file.field(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, "constants", "[Ljava/lang/Object;");
+
+        code = file.method(ClassFileWriter.ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V");
+        code.aload(0);
+        code.invokeSpecial(OBJECT, "<init>", "()V");
+        code.aload(0);
+        code.aload(1);
+        code.putField(className, "constants", "[Ljava/lang/Object;");
+        code.op(ClassFileWriter.RETURN, 0);
+
+        code = file.method(ClassFileWriter.ACC_PUBLIC, "run",
+                "(" + INTERPRETER_TYPE + ENVIRONMENT_TYPE + ")Ljava/lang/Object;");
+        for (Statement statement : function.body) {
+            compile(statement);
+        }
+        // falling off the end of a function returns nil
+        code.op(ClassFileWriter.ACONST_NULL, 1);
+        code.op(ClassFileWriter.ARETURN, -1);
+        return file.toByteArray();
+    }
+
+    Object[] constants() {
+        return constants.toArray();
+    }
+
+    private void compile(Statement statement) {
+        statement.accept(this);
+    }
+
+    private void compile(Expression expression) {
+        expression.accept(this);
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Helpers
+    //////////////////////////////////////////////////////////
+
+    // pushes constants[index] cast to type
+    private void constant(Object value, String type) {
+        int index = constants.size();
+        constants.add(value);
+        code.aload(0);
+        code.getField(className, "constants", "[Ljava/lang/Object;");
+        code.push(index);
+        code.op(ClassFileWriter.AALOAD, -1);
+        if (!type.equals(OBJECT)) code.checkCast(type);
+    }
+
+    private void interpreter() {
+        code.aload(INTERPRETER_LOCAL);
+    }
+
+    private void environment() {
+        code.aload(ENVIRONMENT_LOCAL);
+    }
+
+    private void slots() {
+        environment();
+        code.getField(ENVIRONMENT, "slots", "[Ljava/lang/Object;");
+    }
+
+    private void boxBoolean() {
+        code.invokeStatic(BOOLEAN, "valueOf", "(Z)Ljava/lang/Boolean;");
+    }
+
+    // leaves the truth of the condition on the stack as an int, comparisons skip boxing their result
+    private void condition(Expression condition) {
+        if (condition instanceof Expression.Grouping) {
+            condition(((Expression.Grouping) condition).expression);
+            return;
+        }
+        if (condition instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) condition;
+            String comparison = comparison(binary.operator.tokenType);
+            if (comparison != null) {
+                compile(binary.left);
+                compile(binary.right);
+                code.push(binary.operator.line);
+                code.invokeStatic(ARITHMETIC, comparison, COMPARISON);
+                return;
+            }
+            if (binary.operator.tokenType == TokenType.EQUAL_EQUAL || binary.operator.tokenType == TokenType.BANG_EQUAL) {
+                compile(binary.left);
+                compile(binary.right);
+                code.invokeStatic(INTERPRETER, "isEqual", "(Ljava/lang/Object;Ljava/lang/Object;)Z");
+                if (binary.operator.tokenType == TokenType.BANG_EQUAL) {
+                    code.push(1);
+                    code.op(ClassFileWriter.IXOR, -1);
+                }
+                return;
+            }
+        }
+        compile(condition);
+        code.invokeStatic(INTERPRETER, "isTruth", "(Ljava/lang/Object;)Z");
+    }
+
+    private static String comparison(TokenType operator) {
+        switch (operator) {
+            case GREATER: return "greater";
+            case GREATER_EQUAL: return "greaterEqual";
+            case LESS: return "less";
+            case LESS_EQUAL: return "lessEqual";
+            default: return null;
+        }
+    }
+
+    private static String arithmetic(TokenType operator) {
+        switch (operator) {
+            case PLUS: return "add";
+            case MINUS: return "subtract";
+            case STAR: return "multiply";
+            case SLASH: return "divide";
+            case PERCENT: return "modulo";
+            default: return null;
+        }
+    }
+
+    // the expression is evaluated by the interpreter
+    private void fallback(Expression expression) {
+        fallbacks++;
+        interpreter();
+        constant(expression, "gointerpreter/Expression");
+        environment();
+        code.invokeVirtual(INTERPRETER, "evaluateIn", "(Lgointerpreter/Expression;" + ENVIRONMENT_TYPE + ")Ljava/lang/Object;");
+    }
+
+    // the statement is run by the interpreter, its completion decides where the compiled code goes on
+    private void fallback(Statement statement) {
+        fallbacks++;
+        interpreter();
+        constant(statement, "gointerpreter/Statement");
+        environment();
+        code.invokeVirtual(INTERPRETER, "executeIn", "(Lgointerpreter/Statement;" + ENVIRONMENT_TYPE + ")L" + COMPLETION + ";");
+        code.invokeVirtual(COMPLETION, "ordinal", "()I");
+        int completion = code.newLocal();
+        code.istore(completion);
+        ClassFileWriter.Label normal = code.label();
+        code.iload(completion);
+        code.jump(ClassFileWriter.IFEQ, normal);
+
+        ClassFileWriter.Label notReturn = code.label();
+        code.iload(completion);
+        code.push(Completion.RETURN.ordinal());
+        code.jump(ClassFileWriter.IF_ICMPNE, notReturn);
+        interpreter();
+        code.invokeVirtual(INTERPRETER, "takeReturnValue", "()Ljava/lang/Object;");
+        code.op(ClassFileWriter.ARETURN, -1);
+
+        code.place(notReturn);
+        // break and continue only come back from statements inside a loop, the Resolver rejects them elsewhere
+        if (loop != null) {
+            ClassFileWriter.Label toContinue = code.label();
+            code.iload(completion);
+            code.push(Completion.BREAK.ordinal());
+            code.jump(ClassFileWriter.IF_ICMPNE, toContinue);
+            jumpOut(loop.breakTarget);
+            code.place(toContinue);
+            jumpOut(loop.continueTarget);
+        }
+        code.place(normal);
+    }
+
+    // a jump to a label of the innermost loop, back in the environment of the loop's scope
+    private void jumpOut(ClassFileWriter.Label target) {
+        code.aload(loop.environment);
+        code.astore(ENVIRONMENT_LOCAL);
+        code.jump(ClassFileWriter.GOTO, target);
+    }
+
+    private void arguments(List<Expression> arguments) {
+        code.push(arguments.size());
+        code.newArray(OBJECT);
+        for (int i = 0; i < arguments.size(); i++) {
+            code.op(ClassFileWriter.DUP, 1);
+            code.push(i);
+            compile(arguments.get(i));
+            code.op(ClassFileWriter.AASTORE, -3);
+        }
+    }
+
+    private void storeLocal(int slot, Expression value) {
+        slots();
+        code.push(slot);
+        if (value == null) {
+            code.op(ClassFileWriter.ACONST_NULL, 1);
+        } else {
+            compile(value);
+        }
+        code.op(ClassFileWriter.AASTORE, -3);
+    }
+
+    private void loopBody(Statement body, ClassFileWriter.Label breakTarget, ClassFileWriter.Label continueTarget) {
+        int environment = code.newLocal();
+        environment();
+        code.astore(environment);
+        loop = new Loop(loop, breakTarget, continueTarget, environment);
+        compile(body);
+        loop = loop.enclosing;
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Statements
+    //////////////////////////////////////////////////////////
+
+    public Void visitBlockStatement(Statement.Block statement) {
+        if (!statement.hasScope()) {
+            for (Statement inner : statement.statements) {
+                compile(inner);
+            }
+            return null;
+        }
+        code.newObject(ENVIRONMENT);
+        code.op(ClassFileWriter.DUP, 1);
+        environment();
+        code.push(statement.slotCount);
+        code.invokeSpecial(ENVIRONMENT, "<init>", "(" + ENVIRONMENT_TYPE + "I)V");
+        code.astore(ENVIRONMENT_LOCAL);
+        for (Statement inner : statement.statements) {
+            compile(inner);
+        }
+        if (code.isReachable()) {
+            environment();
+            code.getField(ENVIRONMENT, "enclosing", ENVIRONMENT_TYPE);
+            code.astore(ENVIRONMENT_LOCAL);
+        }
+        return null;
+    }
+
+    public Void visitFunctionStatement(Statement.Function statement) {
+        fallback(statement);
+        return null;
+    }
+
+    public Void visitClassStatement(Statement.Class statement) {
+        fallback(statement);
+        return null;
+    }
+
+    public Void visitExpressionStatement(Statement.ExpressionStmt statement) {
+        compile(statement.expression);
+        code.op(ClassFileWriter.POP, -1);
+        return null;
+    }
+
+    public Void visitIfStatement(Statement.If statement) {
+        ClassFileWriter.Label elseBranch = code.label();
+        ClassFileWriter.Label end = code.label();
+        condition(statement.condition);
+        code.jump(ClassFileWriter.IFEQ, elseBranch);
+        compile(statement.thenBranch);
+        if (code.isReachable()) code.jump(ClassFileWriter.GOTO, end);
+        code.place(elseBranch);
+        if (statement.elseBranch != null) compile(statement.elseBranch);
+        code.place(end);
+        return null;
+    }
+
+    public Void visitPrintStatement(Statement.Print statement) {
+        interpreter();
+        compile(statement.expression);
+        code.invokeVirtual(INTERPRETER, "print", "(Ljava/lang/Object;)V");
+        return null;
+    }
+
+    public Void visitReturnStatement(Statement.Return statement) {
+        if (Interpreter.isTailCall(statement)) {
+            // the call is handed back to Function.invoke, as the interpreter does
+            Expression.Call call = (Expression.Call) statement.value;
+            interpreter();
+            constant(call, "gointerpreter/Expression$Call");
+            compile(call.call);
+            arguments(call.arguments);
+            code.invokeVirtual(INTERPRETER, "tailCall",
+                    "(Lgointerpreter/Expression$Call;Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;");
+        } else if (statement.value != null) {
+            compile(statement.value);
+        } else {
+            code.op(ClassFileWriter.ACONST_NULL, 1);
+        }
+        code.op(ClassFileWriter.ARETURN, -1);
+        return null;
+    }
+
+    public Void visitVarStatement(Statement.Var statement) {
+        if (statement.slot < 0) {
+            fallback(statement);
+        } else {
+            storeLocal(statement.slot, statement.initializer);
+        }
+        return null;
+    }
+
+    public Void visitInitializerStatement(Statement.Initializer statement) {
+        if (statement.slot < 0) {
+            fallback(statement);
+        } else {
+            storeLocal(statement.slot, statement.initializer);
+        }
+        return null;
+    }
+
+    // a labelled loop is left to the interpreter, so a labelled break or continue, which can only be inside
+    // one, is never translated and compiled code only ever jumps to its innermost loop
+    public Void visitForStatement(Statement.For statement) {
+        if (statement.label != null) {
+            fallback(statement);
+            return null;
+        }
+        if (statement.initializer != null) compile(statement.initializer);
+        ClassFileWriter.Label start = code.label();
+        ClassFileWriter.Label next = code.label();
+        ClassFileWriter.Label end = code.label();
+        code.place(start);
+        condition(statement.condition);
+        code.jump(ClassFileWriter.IFEQ, end);
+        loopBody(statement.body, end, next);
+        code.place(next);
+        if (statement.increment != null) {
+            compile(statement.increment);
+            code.op(ClassFileWriter.POP, -1);
+        }
+        code.jump(ClassFileWriter.GOTO, start);
+        code.place(end);
+        return null;
+    }
+
+    public Void visitWhileStatement(Statement.While statement) {
+        if (statement.label != null) {
+            fallback(statement);
+            return null;
+        }
+        ClassFileWriter.Label start = code.label();
+        ClassFileWriter.Label end = code.label();
+        code.place(start);
+        condition(statement.condition);
+        code.jump(ClassFileWriter.IFEQ, end);
+        loopBody(statement.body, end, start);
+        if (code.isReachable()) code.jump(ClassFileWriter.GOTO, start);
+        code.place(end);
+        return null;
+    }
+
+    public Void visitBreakStatement(Statement.Break statement) {
+        jumpOut(loop.breakTarget);
+        return null;
+    }
+
+    public Void visitContinueStatement(Statement.Continue statement) {
+        jumpOut(loop.continueTarget);
+        return null;
+    }
+
+    public Void visitGoStatement(Statement.Go statement) {
+        fallback(statement);
+        return null;
+    }
+
+    public Void visitSendStatement(Statement.Send statement) {
+        fallback(statement);
+        return null;
+    }
+
+    // break in a select leaves the select, so the whole statement is left to the interpreter
+    public Void visitSelectStatement(Statement.Select statement) {
+        fallback(statement);
+        return null;
+    }
+
+    public Void visitLookupStatement(Statement.Lookup statement) {
+        fallback(statement);
+        return null;
+    }
+
+    public Void visitRangeStatement(Statement.Range statement) {
+        fallback(statement);
+        return null;
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Expressions
+    //////////////////////////////////////////////////////////
+
+    public Void visitVariableExpression(Expression.Variable expression) {
+        if (expression.depth == Expression.GLOBAL) {
+            interpreter();
+            code.getField(INTERPRETER, "globals", ENVIRONMENT_TYPE);
+            constant(expression.name, "gointerpreter/Token");
+            code.invokeVirtual(ENVIRONMENT, "get", "(Lgointerpreter/Token;)Ljava/lang/Object;");
+        } else if (expression.depth == 0) {
+            slots();
+            code.push(expression.slot);
+            code.op(ClassFileWriter.AALOAD, -1);
+        } else {
+            environment();
+            code.push(expression.depth);
+            code.push(expression.slot);
+            code.invokeVirtual(ENVIRONMENT, "getAt", "(II)Ljava/lang/Object;");
+        }
+        return null;
+    }
+
+    public Void visitAssignExpression(Expression.Assign expression) {
+        if (expression.depth == 0) {
+            slots();
+            code.push(expression.slot);
+            compile(expression.value);
+            code.op(ClassFileWriter.DUP_X2, 1);
+            code.op(ClassFileWriter.AASTORE, -3);
+            return null;
+        }
+        compile(expression.value);
+        code.op(ClassFileWriter.DUP, 1);
+        int value = code.newLocal();
+        code.astore(value);
+        if (expression.depth == Expression.GLOBAL) {
+            interpreter();
+            code.getField(INTERPRETER, "globals", ENVIRONMENT_TYPE);
+            constant(expression.name, "gointerpreter/Token");
+            code.aload(value);
+            code.invokeVirtual(ENVIRONMENT, "assign", "(Lgointerpreter/Token;Ljava/lang/Object;)V");
+        } else {
+            environment();
+            code.push(expression.depth);
+            code.push(expression.slot);
+            code.aload(value);
+            code.invokeVirtual(ENVIRONMENT, "assignAt", "(IILjava/lang/Object;)V");
+        }
+        return null;
+    }
+
+    public Void visitBinaryExpression(Expression.Binary expression) {
+        TokenType operator = expression.operator.tokenType;
+        String arithmetic = arithmetic(operator);
+        if (arithmetic == null) {
+            if (comparison(operator) == null && operator != TokenType.EQUAL_EQUAL && operator != TokenType.BANG_EQUAL) {
+                fallback(expression);
+                return null;
+            }
+            condition(expression);
+            boxBoolean();
+            return null;
+        }
+        compile(expression.left);
+        compile(expression.right);
+        code.push(expression.operator.line);
+        code.invokeStatic(ARITHMETIC, arithmetic, BINARY);
+        return null;
+    }
+
+    public Void visitUnaryExpression(Expression.Unary expression) {
+        if (expression.operator.tokenType == TokenType.MINUS) {
+            compile(expression.right);
+            code.push(expression.operator.line);
+            code.invokeStatic(ARITHMETIC, "negate", "(Ljava/lang/Object;I)Ljava/lang/Object;");
+            return null;
+        }
+        constant(expression.operator, "gointerpreter/Token");
+        compile(expression.right);
+        code.invokeStatic(INTERPRETER, "unary", "(Lgointerpreter/Token;Ljava/lang/Object;)Ljava/lang/Object;");
+        return null;
+    }
+
+    public Void visitCallExpression(Expression.Call expression) {
+        // a method call goes through the interpreter's call-site cache
+        if (expression.call instanceof Expression.Get) {
+            fallback(expression);
+            return null;
+        }
+        interpreter();
+        constant(expression, "gointerpreter/Expression$Call");
+        compile(expression.call);
+        arguments(expression.arguments);
+        code.invokeVirtual(INTERPRETER, "call",
+                "(Lgointerpreter/Expression$Call;Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;");
+        return null;
+    }
+
+    public Void visitGetExpression(Expression.Get expression) {
+        fallback(expression);
+        return null;
+    }
+
+    public Void visitGroupingExpression(Expression.Grouping expression) {
+        compile(expression.expression);
+        return null;
+    }
+
+    public Void visitLiteralExpression(Expression.Literal expression) {
+        Object value = expression.literal;
+        if (value == null) {
+            code.op(ClassFileWriter.ACONST_NULL, 1);
+        } else if (value instanceof Boolean) {
+            code.getStatic(BOOLEAN, (Boolean) value ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+        } else {
+            constant(value, OBJECT);
+        }
+        return null;
+    }
+
+    public Void visitLogicalExpression(Expression.Logical expression) {
+        ClassFileWriter.Label end = code.label();
+        compile(expression.left);
+        code.op(ClassFileWriter.DUP, 1);
+        code.invokeStatic(INTERPRETER, "isTruth", "(Ljava/lang/Object;)Z");
+        // or keeps a true left operand, and keeps a false one
+        code.jump(expression.operator.tokenType == TokenType.OR ? ClassFileWriter.IFNE : ClassFileWriter.IFEQ, end);
+        code.op(ClassFileWriter.POP, -1);
+        compile(expression.right);
+        code.place(end);
+        return null;
+    }
+
+    public Void visitSetExpression(Expression.Set expression) {
+        fallback(expression);
+        return null;
+    }
+
+    public Void visitThisExpression(Expression.This expression) {
+        fallback(expression);
+        return null;
+    }
+
+    public Void visitSuperExpression(Expression.Super expression) {
+        fallback(expression);
+        return null;
+    }
+
+    public Void visitReceiveExpression(Expression.Receive expression) {
+        fallback(expression);
+        return null;
+    }
+
+    public Void visitMakeExpression(Expression.Make expression) {
+        fallback(expression);
+        return null;
+    }
+
+    public Void visitIndexExpression(Expression.Index expression) {
+        compile(expression.object);
+        compile(expression.index);
+        code.push(expression.bracket.line);
+        code.invokeStatic(INTERPRETER, "index", BINARY);
+        return null;
+    }
+
+    public Void visitSetIndexExpression(Expression.SetIndex expression) {
+        fallback(expression);
+        return null;
+    }
+
+    public Void visitSlicingExpression(Expression.Slicing expression) {
+        fallback(expression);
+        return null;
+    }
+
+    public Void visitSliceLiteralExpression(Expression.SliceLiteral expression) {
+        fallback(expression);
+        return null;
+    }
+
+    public Void visitMapLiteralExpression(Expression.MapLiteral expression) {
+        fallback(expression);
+        return null;
+    }
+}
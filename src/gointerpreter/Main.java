@@ -3,81 +3,230 @@ package gointerpreter;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.lang.String;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
 public class Main {
-    private static final Interpreter interpreter = new Interpreter();
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
+    // options, the same for every script of a run
+    private static boolean useVm = false;
+    private static boolean specialize = false;
+    private static boolean optimize = false;
+    private static boolean useCache = true;
+    // a program's output is flushed after every line, or only when the buffer fills up and when the program
+    // ends, by default the first on a terminal and the second when the output goes to a file or a pipe
+    private static boolean lineBuffered = System.console() != null;
+    // how deep scripts can recurse, in bytes: the stack of the thread a script runs on, which is what the
+    // tree-walker recurses on, and the heap the vm may take for its frames
+    static long stackSize = 256L << 20;
+    // how many calls and loop iterations make the tree-walker compile a function, 0 to never compile, and
+    // whether to list what was compiled on stderr
+    private static int jitThreshold = Jit.DEFAULT_THRESHOLD;
+    private static boolean jitLog = false;
+
+    // one script's engine and error state, a batch makes one Main per script so they can run side by side
+    final ErrorReporter reporter;
+    private final Interpreter interpreter;
+    private final VM vm;
+
+    Main(PrintStream out, PrintStream err) {
+        reporter = new ErrorReporter(out, err, lineBuffered);
+        interpreter = new Interpreter(reporter, specialize,
+                jitThreshold > 0 ? new Jit(jitThreshold, jitLog ? reporter.err : null) : null);
+        vm = new VM(reporter, stackSize);
+    }
 
     public static void main(String[] args) throws IOException {
-        if(args.length>1) {
-            System.out.println("Usage: gointerpreter [script]");
-        } else if(args.length==1) {
-            runFile(args[0]);
+        String script = null;
+        String batch = null;
+        for(int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if(arg.equals("--engine=vm")) {
+                useVm = true;
+            } else if(arg.equals("--engine=tree")) {
+                useVm = false;
+            } else if(arg.equals("--specialize")) {
+                specialize = true;
+            } else if(arg.equals("--optimize")) {
+                optimize = true;
+            } else if(arg.equals("--no-cache")) {
+                useCache = false;
+            } else if(arg.equals("--output=line")) {
+                lineBuffered = true;
+            } else if(arg.equals("--output=block")) {
+                lineBuffered = false;
+            } else if(arg.startsWith("--stack=") && size(arg.substring(8)) > 0) {
+                stackSize = size(arg.substring(8));
+            } else if(arg.startsWith("--jit-threshold=") && arg.substring(16).matches("[0-9]{1,9}")) {
+                jitThreshold = Integer.parseInt(arg.substring(16));
+            } else if(arg.equals("--jit-log")) {
+                jitLog = true;
+            } else if(arg.equals("--batch") && i + 1 < args.length && batch==null) {
+                batch = args[++i];
+            } else if(arg.startsWith("--") || script!=null) {
+                usage();
+                return;
+            } else {
+                script = arg;
+            }
+        }
+        if(batch!=null && script!=null) {
+            usage();
+        } else if(batch!=null) {
+            System.exit(new BatchRunner(Paths.get(batch)).run());
         } else {
-            runPrompt();
+            Path path = script == null ? null : Paths.get(script);
+            int status = onStack(() -> {
+                // the engines are made on the thread they run on, which goroutines treat as main
+                Main main = new Main(System.out, System.err);
+                try {
+                    if(path == null) {
+                        main.runPrompt();
+                        return 0;
+                    }
+                    return main.runFile(path);
+                } catch (StackOverflowError error) {
+                    return main.stackOverflow();
+                }
+            });
+            if(status!=0) System.exit(status);
+        }
+    }
+
+    private interface Run {
+        int run() throws IOException;
+    }
+
+    // runs on a thread whose stack is --stack bytes, deep recursion in the tree-walker is limited by it and not
+    // by the -Xss of the JVM's main thread
+    private static int onStack(Run body) throws IOException {
+        int[] status = new int[1];
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                status[0] = body.run();
+            } catch (IOException | RuntimeException | Error error) {
+                failure[0] = error;
+            }
+        }, "main", stackSize);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            return 130;
         }
+        if(failure[0] instanceof IOException) throw (IOException) failure[0];
+        if(failure[0] instanceof RuntimeException) throw (RuntimeException) failure[0];
+        if(failure[0] != null) throw (Error) failure[0];
+        return status[0];
     }
 
-    private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
-        if(hadError) System.exit(65);
-        if(hadRuntimeError) System.exit(70);
+    // 64m, 1g, 512k or a number of bytes, 0 when it is none of these
+    private static long size(String text) {
+        long unit = 1;
+        switch (text.isEmpty() ? ' ' : Character.toLowerCase(text.charAt(text.length() - 1))) {
+            case 'k': unit = 1L << 10; break;
+            case 'm': unit = 1L << 20; break;
+            case 'g': unit = 1L << 30; break;
+        }
+        if(unit > 1) text = text.substring(0, text.length() - 1);
+        try {
+            return Math.max(0, Math.multiplyExact(Long.parseLong(text), unit));
+        } catch (NumberFormatException | ArithmeticException error) {
+            return 0;
+        }
     }
 
-    private static void runPrompt() throws IOException {
+    private static void usage() {
+        System.out.println("Usage: gointerpreter [--engine=tree|vm] [--specialize] [--optimize] [--no-cache] [--output=line|block] [--stack=SIZE] [--jit-threshold=N] [--jit-log] [script | --batch directory]");
+    }
+
+    // reports a StackOverflowError that unwound the whole script, which ends it, a REPL session too
+    int stackOverflow() {
+        reporter.runtimeError(useVm ? vm.stackOverflow() : interpreter.stackOverflow());
+        reporter.out.flush();
+        return reporter.status();
+    }
+
+    // returns the exit status of the script
+    int runFile(Path path) throws IOException {
+        // the file is scanned straight from a memory mapping as the parser asks for tokens
+        ByteBuffer source = Scanner.map(path);
+        if(useCache && source.remaining() >= ProgramCache.MIN_SOURCE) {
+            runCached(source);
+        } else {
+            run(Scanner.forBytes(source, Charset.defaultCharset(), reporter), optimize);
+        }
+        // the scanner's warnings are still buffered when the program did not run
+        reporter.out.flush();
+        return reporter.status();
+    }
+
+    private void runPrompt() throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
+        ReplSession session = new ReplSession(this);
         for(;;) {
-            System.out.print("> ");
+            System.out.print(session.isPending() ? "... " : "> ");
             String line = reader.readLine();
             if(line==null) break;
-            run(line);
-            hadError = false;
+            session.input(line);
         }
     }
 
-    private static void run(String source) throws IOException {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        List<Statement> statements = parser.parse();
-        // to stop is there is a syntax error
-        if(hadError) return;
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
-        if(hadError) return;
-        interpreter.interpret(statements);
+    // a program seen before is loaded already resolved and optimized, only new ones go through the front end
+    private void runCached(ByteBuffer source) throws IOException {
+        ProgramCache cache = new ProgramCache(ProgramCache.defaultDirectory());
+        Charset charset = Charset.defaultCharset();
+        String key = cache.key(source, charset, optimize);
+        List<Statement> statements = cache.load(key);
+        if(statements == null) {
+            Scanner scanner = Scanner.forBytes(source, charset, reporter);
+            statements = compile(scanner, optimize);
+            if(statements == null) return;
+            // what the scanner printed would not be printed again by a cached run
+            if(!scanner.hadWarning) cache.store(key, statements);
+        }
+        execute(statements);
     }
 
-    static void error(int line, String message) {
-        report(line, "", message);
+    private void run(Scanner scanner, boolean optimize) throws IOException {
+        List<Statement> statements = compile(scanner, optimize);
+        if(statements != null) execute(statements);
     }
 
-    static void report(int line, String where, String message) {
-        System.err.println("[line "+line+"] Error"+where+": "+message);
-//        System.out.print("> ");
-        hadError = true;
+    // scans, parses and resolves, null when there is an error
+    private List<Statement> compile(Scanner scanner, boolean optimize) throws IOException {
+        List<Statement> statements;
+        try {
+            Parser parser = new Parser(scanner);
+            statements = parser.parse();
+        } catch (UncheckedIOException error) {
+            throw error.getCause();
+        }
+        // to stop is there is a syntax error
+        if(reporter.hadError) return null;
+        Resolver resolver = new Resolver(reporter);
+        resolver.resolve(statements);
+        if(reporter.hadError) return null;
+        if(optimize) statements = new Optimizer().optimize(statements);
+        return statements;
     }
 
-    // polymorphism is used here for checking the type of the token
-    static void error(Token token, String message) {
-        if (token.tokenType == TokenType.EOF) {
-            report(token.line, " at end", message);
+    // runs resolved statements on the selected engine, whose globals persist from one call to the next
+    void execute(List<Statement> statements) {
+        if(useVm) {
+            Chunk script = new Compiler(reporter).compile(statements);
+            if(reporter.hadError) return;
+            vm.interpret(script);
         } else {
-            report(token.line, " at " + token.lexeme + ":", message);
+            interpreter.interpret(statements);
         }
     }
-
-    static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-//        System.out.print("> ");
-        hadRuntimeError = true;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package gointerpreter;
+
+// instruction set of the bytecode vm, kept as plain bytes so the dispatch loop can switch on them directly
+// operands follow the opcode in the code array, all of them are unsigned 16 bit values unless noted
+final class OpCode {
+    static final byte CONSTANT = 0;        // constant index
+    static final byte NIL = 1;
+    static final byte TRUE = 2;
+    static final byte FALSE = 3;
+    static final byte POP = 4;
+
+    static final byte GET_LOCAL = 5;       // depth, slot
+    static final byte SET_LOCAL = 6;       // depth, slot
+    static final byte GET_GLOBAL = 7;      // name constant
+    static final byte SET_GLOBAL = 8;      // name constant
+    static final byte DEFINE_GLOBAL = 9;   // name constant
+    static final byte GET_PROPERTY = 10;   // name constant
+    static final byte SET_PROPERTY = 11;   // name constant
+    static final byte GET_SUPER = 12;      // depth, depth of the receiver, name constant
+
+    static final byte EQUAL = 13;
+    static final byte NOT_EQUAL = 14;
+    static final byte GREATER = 15;
+    static final byte GREATER_EQUAL = 16;
+    static final byte LESS = 17;
+    static final byte LESS_EQUAL = 18;
+    static final byte ADD = 19;
+    static final byte SUBTRACT = 20;
+    static final byte MULTIPLY = 21;
+    static final byte DIVIDE = 22;
+    static final byte NOT = 23;
+    static final byte NEGATE = 24;
+
+    static final byte PRINT = 25;
+    static final byte JUMP = 26;           // forward offset
+    static final byte JUMP_IF_FALSE = 27;  // forward offset, leaves the condition on the stack
+    static final byte LOOP = 28;           // backward offset
+    static final byte CALL = 29;           // argument count
+    static final byte CLOSURE = 30;        // function constant
+    static final byte INHERIT = 31;
+    static final byte CLASS = 32;          // name constant, method count, has superclass (one byte)
+    static final byte RETURN = 33;
+    static final byte PUSH_SCOPE = 34;     // slot count
+    static final byte POP_SCOPE = 35;
+    static final byte DEFINE_LOCAL = 36;   // slot
+    static final byte MODULO = 37;
+    static final byte INVOKE = 38;         // name constant, argument count (one byte)
+    static final byte GO = 39;             // argument count (one byte)
+    static final byte SEND = 40;
+    static final byte RECEIVE = 41;
+    static final byte MAKE_CHANNEL = 42;   // Slice kind of the elements (one byte), capacity on the stack
+    static final byte SELECT = 43;         // case count (one byte), then for each case its kind (one byte) and
+                                           // the offset of its code from the end of the instruction, pushes what
+                                           // the case received and whether it was sent
+
+    static final byte GET_INDEX = 44;
+    static final byte SET_INDEX = 45;
+    static final byte SLICE = 46;          // which bounds are on the stack (one byte): 1 for low, 2 for high
+    static final byte SLICE_LITERAL = 47;  // Slice kind (one byte), element count, below the elements the length
+    static final byte MAKE_SLICE = 48;     // Slice kind (one byte), length and capacity or nil on the stack
+    static final byte MAP_LITERAL = 49;    // nil map of the type constant, entry count, below the keys and values
+                                           // the size or nil
+    static final byte LOOKUP = 50;         // map and key on the stack, replaced by the value and whether it was there
+    static final byte RANGE = 51;          // replaces the value on top of the stack by a RangeIterator over it
+    static final byte NEXT = 52;           // forward offset taken when the iterator on top of the stack is done,
+                                           // otherwise pushes its key and value
+    static final byte TAIL_CALL = 53;      // argument count (one byte), a call whose result is returned at once
+    static final byte RECEIVE_OK = 54;     // channel on the stack, replaced by what was received and whether it was
+                                           // sent rather than the channel closed
+
+    // kinds of SELECT cases, a send case has its channel and value on the stack, a receive case only its channel
+    static final byte SELECT_RECEIVE = 0;
+    static final byte SELECT_SEND = 1;
+    static final byte SELECT_DEFAULT = 2;
+
+    private OpCode() {}
+}
@@ -0,0 +1,478 @@
+package gointerpreter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+// optional pass between the Resolver and the engines, enabled with --optimize
+// it folds operators whose operands are literals, replaces reads of variables that are never reassigned
+// by their literal value and drops if/while statements whose condition is a literal
+// it runs on resolved trees, so it mirrors the Resolver's scopes and keeps the depth and slot data intact
+class Optimizer implements Expression.Visitor<Expression>, Statement.Visitor<Statement> {
+    // the first walk only records which declarations are assigned to, the second one rewrites the tree
+    private boolean collecting;
+    private final Set<Statement> reassigned = new HashSet<>();
+    private final Map<Statement, Object> constants = new IdentityHashMap<>();
+    // globals are late bound, so an assignment may be seen before the declaration it targets
+    private final Set<String> assignedGlobals = new HashSet<>();
+
+    // a scope maps names to their declaring Var or Initializer statement, or to null for parameters and the like
+    private final Stack<Map<String, Statement>> scopes = new Stack<>();
+    private final Map<String, Statement> globals = new HashMap<>();
+
+    List<Statement> optimize(List<Statement> statements) {
+        collecting = true;
+        optimizeAll(statements);
+        for (String name : assignedGlobals) {
+            Statement declaration = globals.get(name);
+            if (declaration != null) reassigned.add(declaration);
+        }
+        globals.clear();
+        collecting = false;
+        return optimizeAll(statements);
+    }
+
+    // a block without a scope in a list of statements is spliced into it, so nesting costs nothing at runtime
+    private List<Statement> optimizeAll(List<Statement> statements) {
+        List<Statement> result = new ArrayList<>(statements.size());
+        for (Statement statement : statements) {
+            Statement optimized = optimize(statement);
+            if (optimized instanceof Statement.Block && !((Statement.Block) optimized).hasScope()) {
+                result.addAll(((Statement.Block) optimized).statements);
+            } else if (optimized != null) {
+                result.add(optimized);
+            }
+        }
+        return result;
+    }
+
+    // returns null when the statement can be dropped
+    private Statement optimize(Statement statement) {
+        return statement.accept(this);
+    }
+
+    // for places that need a statement even when there is nothing left to run
+    private Statement optimizeRequired(Statement statement) {
+        Statement optimized = optimize(statement);
+        if (optimized != null) return optimized;
+        return new Statement.Block(new ArrayList<>());
+    }
+
+    private Expression optimize(Expression expression) {
+        if (expression == null) return null;
+        return expression.accept(this);
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Scopes
+    //////////////////////////////////////////////////////////
+
+    private void declare(Token name, Statement declaration) {
+        if (!scopes.isEmpty()) {
+            scopes.peek().put(name.lexeme, declaration);
+            return;
+        }
+        // a global declared twice is effectively reassigned, both declarations keep their runtime lookup
+        if (collecting && globals.containsKey(name.lexeme)) {
+            Statement previous = globals.get(name.lexeme);
+            if (previous != null) reassigned.add(previous);
+            if (declaration != null) reassigned.add(declaration);
+        }
+        globals.put(name.lexeme, declaration);
+    }
+
+    private Statement lookUp(Expression.Resolvable expression, String name) {
+        if (expression.depth == Expression.GLOBAL) return globals.get(name);
+        int index = scopes.size() - 1 - expression.depth;
+        if (index < 0) return null;
+        return scopes.get(index).get(name);
+    }
+
+    private void optimizeFunction(Statement.Function function, List<Statement> body) {
+        scopes.push(new HashMap<>());
+        for (Token parameter : function.parameters) {
+            declare(parameter, null);
+        }
+        body.addAll(optimizeAll(function.body));
+        scopes.pop();
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Statements
+    //////////////////////////////////////////////////////////
+
+    public Statement visitBlockStatement(Statement.Block statement) {
+        if (statement.hasScope()) scopes.push(new HashMap<>());
+        List<Statement> statements = optimizeAll(statement.statements);
+        if (statement.hasScope()) scopes.pop();
+        Statement.Block block = new Statement.Block(statements);
+        block.slotCount = statement.slotCount;
+        return block;
+    }
+
+    public Statement visitFunctionStatement(Statement.Function statement) {
+        declare(statement.name, null);
+        return function(statement);
+    }
+
+    private Statement.Function function(Statement.Function statement) {
+        List<Statement> body = new ArrayList<>();
+        optimizeFunction(statement, body);
+        Statement.Function function = new Statement.Function(statement.name, statement.parameters, body);
+        function.slot = statement.slot;
+        function.slotCount = statement.slotCount;
+        return function;
+    }
+
+    public Statement visitClassStatement(Statement.Class statement) {
+        declare(statement.name, null);
+        Expression superclass = optimize(statement.superclass);
+        if (statement.superclass != null) {
+            scopes.push(new HashMap<>());
+            scopes.peek().put("super", null);
+        }
+        List<Statement.Function> methods = new ArrayList<>();
+        for (Statement.Function method : statement.methods) {
+            methods.add(function(method));
+        }
+        if (statement.superclass != null) scopes.pop();
+        Statement.Class klass = new Statement.Class(statement.name, superclass, methods);
+        klass.slot = statement.slot;
+        return klass;
+    }
+
+    public Statement visitExpressionStatement(Statement.ExpressionStmt statement) {
+        Expression expression = optimize(statement.expression);
+        if (expression == statement.expression) return statement;
+        return new Statement.ExpressionStmt(expression);
+    }
+
+    public Statement visitIfStatement(Statement.If statement) {
+        Expression condition = optimize(statement.condition);
+        if (condition instanceof Expression.Literal) {
+            if (Interpreter.isTruth(((Expression.Literal) condition).literal)) {
+                return optimize(statement.thenBranch);
+            }
+            if (statement.elseBranch == null) return null;
+            return optimize(statement.elseBranch);
+        }
+        Statement thenBranch = optimizeRequired(statement.thenBranch);
+        Statement elseBranch = statement.elseBranch == null ? null : optimize(statement.elseBranch);
+        return new Statement.If(condition, thenBranch, elseBranch);
+    }
+
+    public Statement visitPrintStatement(Statement.Print statement) {
+        Expression expression = optimize(statement.expression);
+        if (expression == statement.expression) return statement;
+        return new Statement.Print(expression);
+    }
+
+    public Statement visitReturnStatement(Statement.Return statement) {
+        Expression value = optimize(statement.value);
+        if (value == statement.value) return statement;
+        return new Statement.Return(statement.keyword, value);
+    }
+
+    public Statement visitVarStatement(Statement.Var statement) {
+        Expression initializer = optimize(statement.initializer);
+        declare(statement.name, statement);
+        recordConstant(statement, statement.initializer, initializer);
+        if (initializer == statement.initializer) return statement;
+        Statement.Var var = new Statement.Var(statement.name, initializer);
+        var.slot = statement.slot;
+        return var;
+    }
+
+    public Statement visitInitializerStatement(Statement.Initializer statement) {
+        Expression initializer = optimize(statement.initializer);
+        declare(statement.name, statement);
+        recordConstant(statement, statement.initializer, initializer);
+        if (initializer == statement.initializer) return statement;
+        Statement.Initializer var = new Statement.Initializer(statement.name, initializer);
+        var.slot = statement.slot;
+        return var;
+    }
+
+    // a declaration with no initializer holds nil until something is assigned to it
+    private void recordConstant(Statement declaration, Expression original, Expression optimized) {
+        if (collecting || reassigned.contains(declaration)) return;
+        if (original == null) {
+            constants.put(declaration, null);
+        } else if (optimized instanceof Expression.Literal) {
+            constants.put(declaration, ((Expression.Literal) optimized).literal);
+        }
+    }
+
+    public Statement visitForStatement(Statement.For statement) {
+        Statement initializer = statement.initializer == null ? null : optimize(statement.initializer);
+        Expression condition = optimize(statement.condition);
+        if (condition instanceof Expression.Literal && !Interpreter.isTruth(((Expression.Literal) condition).literal)) {
+            return initializer;
+        }
+        Expression increment = optimize(statement.increment);
+        Statement body = optimizeRequired(statement.body);
+        return new Statement.For(initializer, condition, increment, body, statement.label);
+    }
+
+    public Statement visitBreakStatement(Statement.Break statement) {
+        return statement;
+    }
+
+    public Statement visitContinueStatement(Statement.Continue statement) {
+        return statement;
+    }
+
+    public Statement visitGoStatement(Statement.Go statement) {
+        Expression.Call call = (Expression.Call) optimize(statement.call);
+        if (call == statement.call) return statement;
+        return new Statement.Go(statement.keyword, call);
+    }
+
+    public Statement visitSendStatement(Statement.Send statement) {
+        Expression channel = optimize(statement.channel);
+        Expression value = optimize(statement.value);
+        if (channel == statement.channel && value == statement.value) return statement;
+        return new Statement.Send(channel, statement.arrow, value);
+    }
+
+    public Statement visitSelectStatement(Statement.Select statement) {
+        List<Statement.Select.Case> cases = new ArrayList<>();
+        for (Statement.Select.Case selectCase : statement.cases) {
+            Expression channel = optimize(selectCase.channel);
+            Expression value = optimize(selectCase.value);
+            // a receive case assigns its targets like an assignment does, or declares them like a range
+            if (selectCase.declare) scopes.push(new HashMap<>());
+            bind(selectCase.target, selectCase.declare, statement);
+            bind(selectCase.ok, selectCase.declare, statement);
+            Statement.Block body = (Statement.Block) optimize(selectCase.body);
+            if (selectCase.declare) scopes.pop();
+            Statement.Select.Case optimized = new Statement.Select.Case(selectCase.keyword, channel, value,
+                    selectCase.target, selectCase.ok, selectCase.declare, body);
+            optimized.slotCount = selectCase.slotCount;
+            cases.add(optimized);
+        }
+        return new Statement.Select(statement.keyword, cases);
+    }
+
+    public Statement visitLookupStatement(Statement.Lookup statement) {
+        Expression source = optimize(statement.source);
+        bind(statement.value, statement.declare, statement);
+        bind(statement.ok, statement.declare, statement);
+        if (source == statement.source) return statement;
+        return new Statement.Lookup(statement.value, statement.ok, statement.declare, source);
+    }
+
+    // mirrors Resolver.bind: a target := declares is never a constant, any other one is assigned to
+    private void bind(Expression.Variable target, boolean declare, Statement declaration) {
+        if (target == null) return;
+        if (declare && (scopes.isEmpty() || !scopes.peek().containsKey(target.name.lexeme))) {
+            declare(target.name, declaration);
+        } else if (collecting) {
+            assigned(target, target.name);
+        }
+    }
+
+    public Statement visitRangeStatement(Statement.Range statement) {
+        Expression object = optimize(statement.object);
+        if (statement.declare) scopes.push(new HashMap<>());
+        bind(statement.key, statement.declare, statement);
+        bind(statement.value, statement.declare, statement);
+        Statement body = optimizeRequired(statement.body);
+        if (statement.declare) scopes.pop();
+        Statement.Range range = new Statement.Range(statement.keyword, statement.key, statement.value,
+                statement.declare, object, body, statement.label);
+        range.slotCount = statement.slotCount;
+        return range;
+    }
+
+    public Statement visitWhileStatement(Statement.While statement) {
+        Expression condition = optimize(statement.condition);
+        if (condition instanceof Expression.Literal && !Interpreter.isTruth(((Expression.Literal) condition).literal)) {
+            return null;
+        }
+        Statement body = optimizeRequired(statement.body);
+        return new Statement.While(condition, body, statement.label);
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Expressions
+    //////////////////////////////////////////////////////////
+
+    public Expression visitVariableExpression(Expression.Variable expression) {
+        if (collecting) return expression;
+        Statement declaration = lookUp(expression, expression.name.lexeme);
+        if (declaration != null && constants.containsKey(declaration)) {
+            return new Expression.Literal(constants.get(declaration));
+        }
+        return expression;
+    }
+
+    public Expression visitAssignExpression(Expression.Assign expression) {
+        Expression value = optimize(expression.value);
+        if (collecting) {
+            assigned(expression, expression.name);
+            return expression;
+        }
+        if (value == expression.value) return expression;
+        Expression.Assign assign = new Expression.Assign(expression.name, value);
+        assign.depth = expression.depth;
+        assign.slot = expression.slot;
+        return assign;
+    }
+
+    private void assigned(Expression.Resolvable target, Token name) {
+        if (target.depth == Expression.GLOBAL) {
+            assignedGlobals.add(name.lexeme);
+        } else {
+            Statement declaration = lookUp(target, name.lexeme);
+            if (declaration != null) reassigned.add(declaration);
+        }
+    }
+
+    public Expression visitBinaryExpression(Expression.Binary expression) {
+        Expression left = optimize(expression.left);
+        Expression right = optimize(expression.right);
+        if (left instanceof Expression.Literal && right instanceof Expression.Literal) {
+            try {
+                // a literal is stored with the tree, so a folded concatenation is kept as a String
+                return new Expression.Literal(Rope.flatten(Interpreter.binary(expression.operator,
+                        ((Expression.Literal) left).literal, ((Expression.Literal) right).literal)));
+            } catch (RuntimeError error) {
+                // leave it to fail at runtime, where the error is reported in order
+            }
+        }
+        if (left == expression.left && right == expression.right) return expression;
+        return new Expression.Binary(left, expression.operator, right);
+    }
+
+    public Expression visitUnaryExpression(Expression.Unary expression) {
+        Expression right = optimize(expression.right);
+        if (right instanceof Expression.Literal) {
+            try {
+                return new Expression.Literal(Interpreter.unary(expression.operator, ((Expression.Literal) right).literal));
+            } catch (RuntimeError error) {
+                // same as for binary operators
+            }
+        }
+        if (right == expression.right) return expression;
+        return new Expression.Unary(expression.operator, right);
+    }
+
+    public Expression visitLogicalExpression(Expression.Logical expression) {
+        Expression left = optimize(expression.left);
+        Expression right = optimize(expression.right);
+        if (left instanceof Expression.Literal) {
+            boolean truth = Interpreter.isTruth(((Expression.Literal) left).literal);
+            boolean shortCircuits = expression.operator.tokenType == TokenType.OR ? truth : !truth;
+            return shortCircuits ? left : right;
+        }
+        if (left == expression.left && right == expression.right) return expression;
+        return new Expression.Logical(left, expression.operator, right);
+    }
+
+    public Expression visitCallExpression(Expression.Call expression) {
+        Expression callee = optimize(expression.call);
+        boolean changed = callee != expression.call;
+        List<Expression> arguments = new ArrayList<>(expression.arguments.size());
+        for (Expression argument : expression.arguments) {
+            Expression optimized = optimize(argument);
+            changed |= optimized != argument;
+            arguments.add(optimized);
+        }
+        if (!changed) return expression;
+        return new Expression.Call(callee, expression.name, arguments);
+    }
+
+    public Expression visitGetExpression(Expression.Get expression) {
+        Expression object = optimize(expression.object);
+        if (object == expression.object) return expression;
+        return new Expression.Get(object, expression.name);
+    }
+
+    public Expression visitSetExpression(Expression.Set expression) {
+        Expression value = optimize(expression.value);
+        Expression object = optimize(expression.object);
+        if (object == expression.object && value == expression.value) return expression;
+        return new Expression.Set(object, expression.name, value);
+    }
+
+    public Expression visitGroupingExpression(Expression.Grouping expression) {
+        Expression inner = optimize(expression.expression);
+        if (inner instanceof Expression.Literal) return inner;
+        if (inner == expression.expression) return expression;
+        return new Expression.Grouping(inner);
+    }
+
+    public Expression visitLiteralExpression(Expression.Literal expression) {
+        return expression;
+    }
+
+    public Expression visitReceiveExpression(Expression.Receive expression) {
+        Expression channel = optimize(expression.channel);
+        if (channel == expression.channel) return expression;
+        return new Expression.Receive(expression.arrow, channel);
+    }
+
+    public Expression visitMakeExpression(Expression.Make expression) {
+        List<Expression> arguments = new ArrayList<>(expression.arguments.size());
+        for (Expression argument : expression.arguments) {
+            arguments.add(optimize(argument));
+        }
+        return new Expression.Make(expression.keyword, expression.kind, expression.element, arguments);
+    }
+
+    public Expression visitIndexExpression(Expression.Index expression) {
+        Expression object = optimize(expression.object);
+        Expression index = optimize(expression.index);
+        if (object == expression.object && index == expression.index) return expression;
+        return new Expression.Index(object, expression.bracket, index);
+    }
+
+    public Expression visitSetIndexExpression(Expression.SetIndex expression) {
+        Expression object = optimize(expression.object);
+        Expression index = optimize(expression.index);
+        Expression value = optimize(expression.value);
+        if (object == expression.object && index == expression.index && value == expression.value) return expression;
+        return new Expression.SetIndex(object, expression.bracket, index, value);
+    }
+
+    public Expression visitSlicingExpression(Expression.Slicing expression) {
+        Expression object = optimize(expression.object);
+        Expression low = expression.low == null ? null : optimize(expression.low);
+        Expression high = expression.high == null ? null : optimize(expression.high);
+        if (object == expression.object && low == expression.low && high == expression.high) return expression;
+        return new Expression.Slicing(object, expression.bracket, low, high);
+    }
+
+    public Expression visitSliceLiteralExpression(Expression.SliceLiteral expression) {
+        List<Expression> elements = new ArrayList<>(expression.elements.size());
+        for (Expression element : expression.elements) {
+            elements.add(optimize(element));
+        }
+        return new Expression.SliceLiteral(expression.bracket, expression.kind, expression.length, elements);
+    }
+
+    public Expression visitMapLiteralExpression(Expression.MapLiteral expression) {
+        Expression size = optimize(expression.size);
+        List<Expression> keys = new ArrayList<>(expression.keys.size());
+        List<Expression> values = new ArrayList<>(expression.values.size());
+        for (int i = 0; i < expression.keys.size(); i++) {
+            keys.add(optimize(expression.keys.get(i)));
+            values.add(optimize(expression.values.get(i)));
+        }
+        return new Expression.MapLiteral(expression.keyword, expression.type, size, keys, values);
+    }
+
+    public Expression visitThisExpression(Expression.This expression) {
+        return expression;
+    }
+
+    public Expression visitSuperExpression(Expression.Super expression) {
+        return expression;
+    }
+}
@@ -0,0 +1,135 @@
+package gointerpreter;
+
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.locks.ReentrantLock;
+
+// where a program prints: a byte buffer in front of the stream, flushed when it fills up, when the program
+// ends or fails and, when line buffered, after every line
+// values are written straight into the buffer, ints and whole floats digit by digit, so printing a number
+// allocates nothing
+// goroutines print from threads of their own, so writes take a lock, a ReentrantLock as in Channel
+final class Output {
+    private static final int SIZE = 1 << 16;
+    private static final byte[] NIL = {'n', 'i', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    // Double.toString writes doubles below this without an exponent
+    private static final double PLAIN = 1e7;
+
+    private final PrintStream stream;
+    private final Charset charset;
+    private final boolean lineBuffered;
+    private final byte[] buffer = new byte[SIZE];
+    private int count = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    Output(PrintStream stream, boolean lineBuffered) {
+        this.stream = stream;
+        // what a PrintStream made without a charset encodes with
+        this.charset = Charset.defaultCharset();
+        this.lineBuffered = lineBuffered;
+    }
+
+    // writes what Interpreter.stringify gives for value, and a newline
+    void println(Object value) {
+        lock.lock();
+        try {
+            if (value == null) {
+                write(NIL);
+            } else if (value instanceof Long) {
+                writeLong((long) value);
+            } else if (value instanceof Double) {
+                writeDouble((double) value);
+            } else if (value instanceof Boolean) {
+                write((boolean) value ? TRUE : FALSE);
+            } else {
+                writeString(value.toString());
+            }
+            put((byte) '\n');
+            if (lineBuffered) flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void flush() {
+        lock.lock();
+        try {
+            drain();
+            stream.flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the digits are written from the end, so the number's length is counted first
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeString(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        int length = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) length++;
+        reserve(length);
+        for (int at = count + length - 1; at >= count; at--) {
+            buffer[at] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count += length;
+    }
+
+    // a whole float prints like an int, as stringify drops the ".0" Double.toString gives it
+    // other doubles still go through Double.toString, whose shortest digits are not worth redoing here
+    private void writeDouble(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < PLAIN) {
+            if (value == 0 && 1 / value < 0) put((byte) '-');
+            writeLong((long) value);
+            return;
+        }
+        writeString(Double.toString(value));
+    }
+
+    // ASCII is copied as it is, the rest of a string that is not is encoded by the stream's charset
+    private void writeString(String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                write(text.substring(i).getBytes(charset));
+                return;
+            }
+            if (count == buffer.length) drain();
+            buffer[count++] = (byte) c;
+        }
+    }
+
+    private void write(byte[] bytes) {
+        for (int offset = 0; offset < bytes.length; ) {
+            if (count == buffer.length) drain();
+            int length = Math.min(bytes.length - offset, buffer.length - count);
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+            offset += length;
+        }
+    }
+
+    private void put(byte b) {
+        if (count == buffer.length) drain();
+        buffer[count++] = b;
+    }
+
+    // makes room for length bytes in one piece, a number is never split across two writes
+    private void reserve(int length) {
+        if (count + length > buffer.length) drain();
+    }
+
+    private void drain() {
+        if (count > 0) stream.write(buffer, 0, count);
+        count = 0;
+    }
+}
@@ -8,111 +8,100 @@ import java.util.List;
 public class Parser {
     boolean isMain=false;
     boolean isImport=false;
-    int pos_main=0;
+    // set once `func main {` opened main, whose closing brace must then end the file
+    private boolean mainOpen=false;
     private static class ParseError extends RuntimeException {}
 
-    private final List<Token> tokens;
+    // tokens come from the scanner as they are needed, the parser only ever looks a few tokens ahead
+    // it works on token numbers and only asks the buffer for a Token when it keeps one
+    private final Scanner scanner;
+    private final ErrorReporter reporter;
+    private final TokenBuffer tokens = new TokenBuffer();
     private int current = 0;
 
-    Parser(List<Token> tokens) {
-        this.tokens = tokens;
-        if(this.tokens.get(0).tokenType==TokenType.PACKAGE && this.tokens.get(1).tokenType==TokenType.PACKAGE_MAIN) {
-            if(this.tokens.get(2).tokenType==TokenType.IMPORT) {
-                if(this.tokens.get(3).tokenType==TokenType.LEFT_PAREN && this.tokens.get(4).tokenType==TokenType.STRING && this.tokens.get(4).literal.equals("fmt")) {
+    Parser(Scanner scanner) {
+        this(scanner, false);
+    }
+
+    // a body parser reads its input as if it were inside main, for REPL lines
+    Parser(Scanner scanner, boolean body) {
+        this.scanner = scanner;
+        this.reporter = scanner.reporter;
+        this.isMain = body;
+        if(typeAt(0)==TokenType.PACKAGE && typeAt(1)==TokenType.PACKAGE_MAIN) {
+            if(typeAt(2)==TokenType.IMPORT) {
+                if(typeAt(3)==TokenType.LEFT_PAREN && typeAt(4)==TokenType.STRING && tokens.literal(current+4).equals("fmt")) {
                     isImport=true;
-                    current++;
-                    current++;
-                    current++;
-                    current++;
-                    current++;
-                    current++;
                 }
                 else {
-                    Main.error(this.tokens.get(4), "Expected import (\"fmt\")");
-                    current++;
-                    current++;
-                    current++;
-                    current++;
-                    current++;
-                    current++;
+                    reporter.error(peekAt(4), "Expected import (\"fmt\")");
                 }
             }
             else {
-                Main.error(this.tokens.get(2), "Expected \"import\"");
-                    current++;
-                    current++;
-                    current++;
-                    current++;
-                    current++;
-                    current++;
-            }
-        }
-        for(int i=0;i<this.tokens.size();i++) {
-            if(this.tokens.get(i).tokenType==TokenType.FUNC) {
-                if(i+1 < this.tokens.size() && this.tokens.get(i+1).tokenType==TokenType.MAIN) {
-                    // if(i+2 < this.tokens.size() && this.tokens.get(i+2).tokenType==TokenType.LEFT_PAREN) {
-                        // if(i+3 < this.tokens.size() && this.tokens.get(i+3).tokenType==TokenType.RIGHT_PAREN) {
-                            if(i+2 < this.tokens.size() && this.tokens.get(i+2).tokenType==TokenType.LEFT_BRACE) {
-                                if(this.tokens.get(this.tokens.size()-2).tokenType==TokenType.RIGHT_BRACE && this.tokens.get(this.tokens.size()-1).tokenType==TokenType.EOF) {
-                                    isMain=true;
-                                    this.tokens.remove(i+2);
-                                    this.tokens.remove(i+1);
-                                    this.tokens.remove(i);
-                                    this.tokens.remove(this.tokens.size()-2);
-                                    pos_main=i;
-                                }
-                                else {
-                                    Main.error(this.tokens.get(tokens.size()-2), "Expected \"}\"");
-                                    this.tokens.remove(i+2);
-                                    this.tokens.remove(i+1);
-                                    this.tokens.remove(i);
-                                    break;
-                                }
-                            }
-                            else {
-                                Main.error(this.tokens.get(i+2), "Expected \"{\"");
-                                this.tokens.remove(i+2);
-                                this.tokens.remove(i+1);
-                                this.tokens.remove(i);
-                                break;
-                            }
-                        // }
-                        // else {
-                        //     Main.error(this.tokens.get(i+2), "Expected \")\"");
-                        //     this.tokens.remove(i+1);
-                        //     this.tokens.remove(i);
-                        //     break;
-                        // }
-                    // }
-                    // else {
-                    //     Main.error(this.tokens.get(i + 1), "Expected \"(\"");
-                    //     this.tokens.remove(i);
-                    //     break;
-                    // }
-                }
+                reporter.error(peekAt(2), "Expected \"import\"");
             }
+            for(int i=0;i<6;i++) advance();
         }
     }
 
     List<Statement> parse() {
+        // package level declarations run before the body of main wherever they are in the file, so functions
+        // declared after main can be called from it
+        List<Statement> declarations = new ArrayList<>();
         List<Statement> statements = new ArrayList<>();
         while(!isAtEnd()) {
-            statements.add(declaration());
+            if(!isMain && check(TokenType.FUNC) && typeAt(1)==TokenType.MAIN) {
+                mainHeader();
+                continue;
+            }
+            // the statements of main take their own braces, so a brace left over closes main
+            if(mainOpen && check(TokenType.RIGHT_BRACE)) {
+                advance();
+                isMain=false;
+                mainOpen=false;
+                continue;
+            }
+            if(isMain) {
+                statements.add(declaration());
+            } else {
+                declarations.add(declaration());
+            }
+        }
+        if(mainOpen) {
+            reporter.error(peek(), "Expected \"}\"");
+        }
+        declarations.addAll(statements);
+        return declarations;
+    }
+
+    // the body of main is parsed as top level code, so its header and closing brace are dropped
+    private void mainHeader() {
+        advance();
+        advance();
+        if(check(TokenType.LEFT_BRACE)) {
+            advance();
+            isMain=true;
+            mainOpen=true;
+        }
+        else {
+            reporter.error(peek(), "Expected \"{\"");
         }
-        return statements;
     }
 
     private Statement declaration() {
         try {
             if(match(TokenType.VAR)) return varDeclaration();
-//            if(match(TokenType.FUNC)) return function("function");
+            if(match(TokenType.FUNC)) return function("function");
             if(match(TokenType.CLASS)) return classDeclaration();
-            // if(match(TokenType.IDENTIFIER)) return initializerDeclaration();
-            if(isMain && current>=pos_main) {
+            if(isMain && check(TokenType.IDENTIFIER)) {
+                if(typeAt(1)==TokenType.COLON_EQUAL) return shortDeclaration();
+                if(typeAt(1)==TokenType.COMMA) return lookup();
+            }
+            if(isMain) {
                 return statement();
             }
             else {
-                Main.error(peek(), "Expected \"func\" or \"var\" or \"class\" or \"identifier\" Cannot code outside the main function.");
+                reporter.error(peek(), "Expected \"func\" or \"var\" or \"class\" or \"identifier\" Cannot code outside the main function.");
                 // System.out.println(this.tokens.get(0));
                 // System.out.println(this.tokens.get(1));
                 // System.out.println(this.tokens.get(2));
@@ -132,7 +121,7 @@ public class Parser {
     }
 
     private Statement.Function function(String kind) {
-        Token name = consume(TokenType.IDENTIFIER, "Expect "+kind+" name.");
+        Token name = token(consume(TokenType.IDENTIFIER, "Expect "+kind+" name."));
         consume(TokenType.LEFT_PAREN, "Expect '(' after "+kind+" name.");
         List<Token> parameters = new ArrayList<>();
         if(!check(TokenType.RIGHT_PAREN)) {
@@ -140,15 +129,103 @@ public class Parser {
                 if(parameters.size() >= 255) {
                     error(peek(), "Cannot have more than 255 parameters.");
                 }
-                parameters.add(consume(TokenType.IDENTIFIER, "Expect parameter name."));
+                parameters.add(token(consume(TokenType.IDENTIFIER, "Expect parameter name.")));
+                if(atType()) skipType();
             } while(match(TokenType.COMMA));
         }
         consume(TokenType.RIGHT_PAREN, "Expect ')' after parameters.");
+        if(atType()) skipType();
         consume(TokenType.LEFT_BRACE, "Expect '{' before "+kind+" body.");
-        List<Statement> body = block();
+        // a function declared next to main has a body of statements all the same
+        boolean enclosing = isMain;
+        isMain = true;
+        List<Statement> body;
+        try {
+            body = block();
+        } finally {
+            isMain = enclosing;
+        }
         return new Statement.Function(name, parameters, body);
     }
 
+    // values are not typed, so the types a declaration names are only skipped
+    private boolean atType() {
+        return check(TokenType.IDENTIFIER) || check(TokenType.CHAN) || check(TokenType.LEFT_BRACKET) || check(TokenType.MAP);
+    }
+
+    private void skipType() {
+        while(true) {
+            if(match(TokenType.CHAN)) continue;
+            if(match(TokenType.LEFT_BRACKET)) {
+                arrayLength();
+                continue;
+            }
+            if(match(TokenType.MAP)) {
+                mapType();
+                return;
+            }
+            break;
+        }
+        consume(TokenType.IDENTIFIER, "Expect type.");
+    }
+
+    // after the '[' of a type: the length of an array type or -1 for a slice type, up to and with the ']'
+    private long arrayLength() {
+        long length = -1;
+        if(match(TokenType.NUMBER)) {
+            Object value = tokens.literal(current-1);
+            if(value instanceof Long) {
+                length = (long) value;
+            } else {
+                error(peekPrevious(), "Array length must be an int.");
+            }
+        }
+        consume(TokenType.RIGHT_BRACKET, "Expect ']' in type.");
+        return length;
+    }
+
+    // the element type of a slice or array type, as the Slice kind its elements are stored as
+    private int elementKind() {
+        if(match(TokenType.IDENTIFIER)) return Slice.kind(peekPrevious().lexeme);
+        skipType();
+        return Slice.ANY;
+    }
+
+    // after the 'map' of a type: the key and value types, as the nil map of the type
+    // a missing key reads as a nil slice or map when the values are slices or maps
+    private GoMap mapType() {
+        consume(TokenType.LEFT_BRACKET, "Expect '[' after 'map'.");
+        int keyKind = elementKind();
+        consume(TokenType.RIGHT_BRACKET, "Expect ']' after map key type.");
+        if(check(TokenType.LEFT_BRACKET) && typeAt(1)==TokenType.RIGHT_BRACKET) {
+            advance();
+            advance();
+            return GoMap.nil(keyKind, Slice.ANY, Slice.nil(elementKind()));
+        }
+        if(match(TokenType.MAP)) return GoMap.nil(keyKind, Slice.ANY, mapType());
+        int valueKind = elementKind();
+        return GoMap.nil(keyKind, valueKind, Slice.zero(valueKind));
+    }
+
+    // the value a variable declared with a type but no value starts with, null for nil
+    private Expression zeroValue() {
+        if(check(TokenType.LEFT_BRACKET)) {
+            Token bracket = token(advance());
+            long length = arrayLength();
+            int kind = elementKind();
+            // a nil slice never changes, an array is made anew every time
+            if(length < 0) return new Expression.Literal(Slice.nil(kind));
+            return new Expression.SliceLiteral(bracket, kind, length, new ArrayList<>());
+        }
+        if(match(TokenType.MAP)) return new Expression.Literal(mapType());
+        if(match(TokenType.IDENTIFIER)) {
+            int kind = Slice.kind(peekPrevious().lexeme);
+            return kind == Slice.ANY ? null : new Expression.Literal(Slice.zero(kind));
+        }
+        skipType();
+        return null;
+    }
+
     private List<Statement> block() {
         List<Statement> statements = new ArrayList<>();
         while(!check(TokenType.RIGHT_BRACE) && !isAtEnd()) {
@@ -159,7 +236,7 @@ public class Parser {
     }
 
     private Statement classDeclaration() {
-        Token name = consume(TokenType.IDENTIFIER, "Expect class name.");
+        Token name = token(consume(TokenType.IDENTIFIER, "Expect class name."));
         Expression superclass = null;
         if(match(TokenType.LESS)) {
             consume(TokenType.IDENTIFIER, "Expect superclass name.");
@@ -175,8 +252,10 @@ public class Parser {
     }
 
     private Statement varDeclaration() {
-        Token name = consume(TokenType.IDENTIFIER, "Expect variable name.");
+        Token name = token(consume(TokenType.IDENTIFIER, "Expect variable name."));
         Expression initializer = null;
+        // a type is on the line of the name, a name on the next line is the start of the next statement
+        if(atType() && peek().line == name.line) initializer = zeroValue();
         if(match(TokenType.EQUAL)) {
             initializer = expression();
         }
@@ -184,26 +263,84 @@ public class Parser {
         return new Statement.Var(name, initializer);
     }
 
+    // name := value
+    private Statement shortDeclaration() {
+        Token name = token(advance());
+        advance();
+        return new Statement.Initializer(name, expression());
+    }
+
+    // value, ok := map[key] or value, ok := <-channel, or with =
+    private Statement lookup() {
+        Expression.Variable value = target(token(advance()));
+        advance();
+        Expression.Variable ok = target(token(consume(TokenType.IDENTIFIER, "Expect variable name after ','.")));
+        boolean declare = match(TokenType.COLON_EQUAL);
+        if(!declare) consume(TokenType.EQUAL, "Expect ':=' or '=' after variables.");
+        Token operator = peekPrevious();
+        Expression expression = expression();
+        if(!(expression instanceof Expression.Index) && !(expression instanceof Expression.Receive)) {
+            throw error(operator, "Expect map index or receive after comma-ok assignment.");
+        }
+        return new Statement.Lookup(value, ok, declare, expression);
+    }
+
+    // the variable a value is assigned to, null for _ which drops it
+    private Expression.Variable target(Token name) {
+        return name.lexeme.equals("_") ? null : new Expression.Variable(name);
+    }
+
     private Statement statement() {
         if(match(TokenType.FMT)) {
             consume(TokenType.DOT, "Expect '.' after 'fmt'.");
             if(match(TokenType.PRINT)) return printStatement();
             else {
-                Main.error(peek(), "Expected \"Println\"");
+                reporter.error(peek(), "Expected \"Println\"");
                 return null;
             }
         }
         if(match(TokenType.RETURN)) return returnStatement();
+        if(match(TokenType.BREAK)) {
+            Token keyword = peekPrevious();
+            return new Statement.Break(keyword, jumpLabel(keyword));
+        }
+        if(match(TokenType.CONTINUE)) {
+            Token keyword = peekPrevious();
+            return new Statement.Continue(keyword, jumpLabel(keyword));
+        }
+        if(check(TokenType.IDENTIFIER) && typeAt(1)==TokenType.COLON) return labeledStatement();
+        if(match(TokenType.GO)) return goStatement();
+        if(match(TokenType.SELECT)) return selectStatement();
         if(match(TokenType.IF)) return ifStatement();
-        if(match(TokenType.FOR)) return forStatement();
-        if(match(TokenType.WHILE)) return whileStatement();
+        if(match(TokenType.FOR)) return forStatement(null);
+        if(match(TokenType.WHILE)) return whileStatement(null);
         if(match(TokenType.LEFT_BRACE)) return new Statement.Block(block());
 
         return expressionStatement();
     }
 
+    // the label after break or continue, only when it is on the same line, a name on the next line starts the
+    // next statement
+    private Token jumpLabel(Token keyword) {
+        if(check(TokenType.IDENTIFIER) && peek().line == keyword.line) return token(advance());
+        return null;
+    }
+
+    // label: for ... or label: while ..., only loops take a label
+    private Statement labeledStatement() {
+        Token label = token(advance());
+        advance();
+        if(match(TokenType.FOR)) return forStatement(label);
+        if(match(TokenType.WHILE)) return whileStatement(label);
+        throw error(peek(), "Expect loop after label.");
+    }
+
     private Statement expressionStatement() {
         Expression expression = expression();
+        if(match(TokenType.ARROW)) {
+            Token arrow = peekPrevious();
+            return new Statement.Send(expression, arrow, expression());
+        }
 //        consume(TokenType.SEMICOLON, "Expect ';' after expression.");
         return new Statement.ExpressionStmt(expression);
     }
@@ -217,13 +354,96 @@ public class Parser {
     private Statement returnStatement() {
         Token keyword = peekPrevious();
         Expression value = null;
-        if(!check(TokenType.SEMICOLON)) {
+        if(!check(TokenType.SEMICOLON) && !check(TokenType.RIGHT_BRACE)) {
             value = expression();
         }
 //        consume(TokenType.SEMICOLON, "Expect ';' after return value.");
         return new Statement.Return(keyword, value);
     }
 
+    private Statement goStatement() {
+        Token keyword = peekPrevious();
+        Expression expression = expression();
+        if(!(expression instanceof Expression.Call)) {
+            throw error(keyword, "Expect function call after 'go'.");
+        }
+        return new Statement.Go(keyword, (Expression.Call) expression);
+    }
+
+    private Statement selectStatement() {
+        Token keyword = peekPrevious();
+        consume(TokenType.LEFT_BRACE, "Expect '{' after 'select'.");
+        List<Statement.Select.Case> cases = new ArrayList<>();
+        boolean hasDefault = false;
+        while(!check(TokenType.RIGHT_BRACE) && !isAtEnd()) {
+            Statement.Select.Case selectCase = selectCase();
+            if(selectCase.channel == null) {
+                if(hasDefault) error(selectCase.keyword, "Multiple defaults in select.");
+                hasDefault = true;
+            }
+            cases.add(selectCase);
+        }
+        consume(TokenType.RIGHT_BRACE, "Expect '}' after select cases.");
+        return new Statement.Select(keyword, cases);
+    }
+
+    private Statement.Select.Case selectCase() {
+        if(match(TokenType.DEFAULT)) {
+            Token keyword = peekPrevious();
+            consume(TokenType.COLON, "Expect ':' after 'default'.");
+            return new Statement.Select.Case(keyword, null, null, null, null, false, caseBody());
+        }
+        Token keyword = token(consume(TokenType.CASE, "Expect 'case' or 'default'."));
+        if(check(TokenType.IDENTIFIER) && (typeAt(1)==TokenType.COLON_EQUAL || typeAt(1)==TokenType.COMMA)) {
+            return receiveCase(keyword);
+        }
+        Expression expression = expression();
+        Expression channel;
+        Expression value = null;
+        Expression.Variable target = null;
+        if(match(TokenType.ARROW)) {
+            channel = expression;
+            value = expression();
+        } else if(expression instanceof Expression.Receive) {
+            channel = ((Expression.Receive) expression).channel;
+        } else if(expression instanceof Expression.Assign && ((Expression.Assign) expression).value instanceof Expression.Receive) {
+            Expression.Assign assign = (Expression.Assign) expression;
+            target = new Expression.Variable(assign.name);
+            channel = ((Expression.Receive) assign.value).channel;
+        } else {
+            throw error(keyword, "Expect send or receive in select case.");
+        }
+        consume(TokenType.COLON, "Expect ':' after select case.");
+        return new Statement.Select.Case(keyword, channel, value, target, null, false, caseBody());
+    }
+
+    // case value := <-channel: and case value, ok := <-channel:, or with =
+    private Statement.Select.Case receiveCase(Token keyword) {
+        Expression.Variable target = target(token(advance()));
+        Expression.Variable ok = null;
+        if(match(TokenType.COMMA)) {
+            ok = target(token(consume(TokenType.IDENTIFIER, "Expect variable name after ','.")));
+        }
+        boolean declare = match(TokenType.COLON_EQUAL);
+        if(!declare) consume(TokenType.EQUAL, "Expect ':=' or '=' after variables.");
+        Expression expression = expression();
+        if(!(expression instanceof Expression.Receive)) {
+            throw error(keyword, "Expect receive in select case.");
+        }
+        consume(TokenType.COLON, "Expect ':' after select case.");
+        return new Statement.Select.Case(keyword, ((Expression.Receive) expression).channel, null, target, ok,
+                declare, caseBody());
+    }
+
+    // a case runs up to the next case, like a block without braces
+    private Statement.Block caseBody() {
+        List<Statement> statements = new ArrayList<>();
+        while(!check(TokenType.CASE) && !check(TokenType.DEFAULT) && !check(TokenType.RIGHT_BRACE) && !isAtEnd()) {
+            statements.add(declaration());
+        }
+        return new Statement.Block(statements);
+    }
+
     private Statement ifStatement() {
 //        consume(TokenType.LEFT_PAREN, "Expect '(' after 'if'.");
         Expression condition = expression();
@@ -240,14 +460,17 @@ public class Parser {
         return new Statement.If(condition, thenBranch, elseBranch);
     }
 
-    private Statement forStatement() {
+    private Statement forStatement(Token label) {
 //        consume(TokenType.LEFT_PAREN, "Expect '(' after 'for'.");
+        if (atRange()) return rangeStatement(label);
 
         Statement initializer;
         if (match(TokenType.SEMICOLON)) {
             initializer = null;
         } else if (match(TokenType.VAR)) {
             initializer = varDeclaration();
+        } else if (check(TokenType.IDENTIFIER) && typeAt(1) == TokenType.COLON_EQUAL) {
+            initializer = shortDeclaration();
         } else {
             initializer = expressionStatement();
         }
@@ -266,14 +489,9 @@ public class Parser {
 
         Statement body = statement();
 
-        if (increment != null) {
-            body = new Statement.Block(Arrays.asList(
-                    body,
-                    new Statement.ExpressionStmt(increment)));
-        }
-
+        // the increment stays on the loop node so that continue still runs it
         if (condition == null) condition = new Expression.Literal(true);
-        body = new Statement.While(condition, body);
+        body = new Statement.For(null, condition, increment, body, label);
 
         if (initializer != null) {
             body = new Statement.Block(Arrays.asList(initializer, body));
@@ -282,12 +500,39 @@ public class Parser {
         return body;
     }
 
-    private Statement whileStatement() {
+    // for range x, for k := range x or for k, v := range x, and the same with =
+    private boolean atRange() {
+        int at = 0;
+        if (typeAt(0) == TokenType.IDENTIFIER) {
+            at = typeAt(1) == TokenType.COMMA && typeAt(2) == TokenType.IDENTIFIER ? 3 : 1;
+            if (typeAt(at) != TokenType.COLON_EQUAL && typeAt(at) != TokenType.EQUAL) return false;
+            at++;
+        }
+        return typeAt(at) == TokenType.RANGE;
+    }
+
+    private Statement rangeStatement(Token label) {
+        Expression.Variable key = null;
+        Expression.Variable value = null;
+        boolean declare = false;
+        if (check(TokenType.IDENTIFIER)) {
+            key = target(token(advance()));
+            if (match(TokenType.COMMA)) value = target(token(advance()));
+            declare = match(TokenType.COLON_EQUAL);
+            if (!declare) advance();
+        }
+        Token keyword = token(consume(TokenType.RANGE, "Expect 'range'."));
+        Expression object = expression();
+        Statement body = statement();
+        return new Statement.Range(keyword, key, value, declare, object, body, label);
+    }
+
+    private Statement whileStatement(Token label) {
 //        consume(TokenType.LEFT_PAREN, "Expect '(' after 'while'.");
         Expression condition = expression();
 //        consume(TokenType.RIGHT_PAREN, "Expect ')' after 'condition'.");
         Statement body = statement();
-        return new Statement.While(condition, body);
+        return new Statement.While(condition, body, label);
     }
 
     private Expression expression() {
@@ -305,6 +550,9 @@ public class Parser {
             } else if(expression instanceof Expression.Get) {
                 Expression.Get get = (Expression.Get)expression;
                 return new Expression.Set(get.object, get.name, value);
+            } else if(expression instanceof Expression.Index) {
+                Expression.Index index = (Expression.Index)expression;
+                return new Expression.SetIndex(index.object, index.bracket, index.index, value);
             }
             error(equals, "Invalid assignment target.");
         }
@@ -363,7 +611,7 @@ public class Parser {
 
     private Expression multiplication() {
         Expression expression = unary();
-        while(match(TokenType.SLASH, TokenType.STAR)) {
+        while(match(TokenType.SLASH, TokenType.STAR, TokenType.PERCENT)) {
             Token operator = peekPrevious();
             Expression right = unary();
             expression = new Expression.Binary(expression, operator, right);
@@ -377,6 +625,10 @@ public class Parser {
             Expression right = unary();
             return new Expression.Unary(operator, right);
         }
+        if(match(TokenType.ARROW)) {
+            Token arrow = peekPrevious();
+            return new Expression.Receive(arrow, unary());
+        }
         return call();
     }
 
@@ -386,8 +638,10 @@ public class Parser {
             if(match(TokenType.LEFT_PAREN)) {
                 expression = finishCall(expression);
             } else if(match(TokenType.DOT)) {
-                Token name = consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
+                Token name = token(consume(TokenType.IDENTIFIER, "Expect property name after '.'."));
                 expression = new Expression.Get(expression, name);
+            } else if(match(TokenType.LEFT_BRACKET)) {
+                expression = index(expression);
             } else {
                 break;
             }
@@ -405,7 +659,22 @@ public class Parser {
                 arguments.add(expression());
             } while(match(TokenType.COMMA));
         }
-        return new Expression.Call(call, consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments."), arguments);
+        return new Expression.Call(call, token(consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments.")), arguments);
+    }
+
+    // object[index] or object[low:high], after the '['
+    private Expression index(Expression object) {
+        Token bracket = peekPrevious();
+        Expression low = null;
+        if(!check(TokenType.COLON)) low = expression();
+        if(match(TokenType.COLON)) {
+            Expression high = null;
+            if(!check(TokenType.RIGHT_BRACKET)) high = expression();
+            consume(TokenType.RIGHT_BRACKET, "Expect ']' after slice bounds.");
+            return new Expression.Slicing(object, bracket, low, high);
+        }
+        consume(TokenType.RIGHT_BRACKET, "Expect ']' after index.");
+        return new Expression.Index(object, bracket, low);
     }
 
     private Expression primary() {
@@ -416,12 +685,20 @@ public class Parser {
         if(match(TokenType.SUPER)) {
             Token keyword = peekPrevious();
             consume(TokenType.DOT, "Expect '.' after 'super'.");
-            Token method = consume(TokenType.IDENTIFIER, "Expect superclass method name.");
+            Token method = token(consume(TokenType.IDENTIFIER, "Expect superclass method name."));
             return new Expression.Super(keyword, method);
         }
         if(match(TokenType.NUMBER, TokenType.STRING)) {
-            return new Expression.Literal(peekPrevious().literal);
+            return new Expression.Literal(tokens.literal(current-1));
+        }
+        // make is an ordinary name unless a type follows it
+        if(check(TokenType.IDENTIFIER) && typeAt(1)==TokenType.LEFT_PAREN
+                && (typeAt(2)==TokenType.CHAN || typeAt(2)==TokenType.LEFT_BRACKET || typeAt(2)==TokenType.MAP)
+                && peek().lexeme.equals("make")) {
+            return make();
         }
+        if(match(TokenType.LEFT_BRACKET)) return sliceLiteral();
+        if(match(TokenType.MAP)) return mapLiteral();
         if(match(TokenType.IDENTIFIER)) {
             return new Expression.Variable(peekPrevious());
         }
@@ -433,33 +710,110 @@ public class Parser {
         throw error(peek(), "Expect expression.");
     }
 
-    private Token peek() {
-        return tokens.get(current);
+    private Expression make() {
+        Token keyword = token(advance());
+        advance();
+        if(match(TokenType.MAP)) {
+            GoMap type = mapType();
+            Expression size = null;
+            if(match(TokenType.COMMA)) size = expression();
+            consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments.");
+            return new Expression.MapLiteral(keyword, type, size, new ArrayList<>(), new ArrayList<>());
+        }
+        TokenType kind = typeAt(0);
+        int element = Slice.ANY;
+        List<Expression> arguments = new ArrayList<>();
+        if(match(TokenType.LEFT_BRACKET)) {
+            consume(TokenType.RIGHT_BRACKET, "Expect ']' after '['.");
+            element = elementKind();
+            consume(TokenType.COMMA, "Expect length after slice type.");
+            arguments.add(expression());
+        } else {
+            // the element type of a channel, whose zero value a closed channel gives
+            consume(TokenType.CHAN, "Expect type after 'make('.");
+            element = elementKind();
+        }
+        if(match(TokenType.COMMA)) arguments.add(expression());
+        consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments.");
+        return new Expression.Make(keyword, kind, element, arguments);
+    }
+
+    // []T{elements} or [length]T{elements}, after the '['
+    private Expression sliceLiteral() {
+        Token bracket = peekPrevious();
+        long length = arrayLength();
+        int kind = elementKind();
+        consume(TokenType.LEFT_BRACE, "Expect '{' after slice type.");
+        List<Expression> elements = new ArrayList<>();
+        while(!check(TokenType.RIGHT_BRACE) && !isAtEnd()) {
+            elements.add(expression());
+            if(!match(TokenType.COMMA)) break;
+        }
+        consume(TokenType.RIGHT_BRACE, "Expect '}' after elements.");
+        if(length >= 0 && elements.size() > length) {
+            error(bracket, "Array index " + length + " out of bounds [0:" + length + "].");
+        }
+        return new Expression.SliceLiteral(bracket, kind, length, elements);
+    }
+
+    // map[K]V{key: value, ...}, after the 'map'
+    private Expression mapLiteral() {
+        Token keyword = peekPrevious();
+        GoMap type = mapType();
+        consume(TokenType.LEFT_BRACE, "Expect '{' after map type.");
+        List<Expression> keys = new ArrayList<>();
+        List<Expression> values = new ArrayList<>();
+        while(!check(TokenType.RIGHT_BRACE) && !isAtEnd()) {
+            keys.add(expression());
+            consume(TokenType.COLON, "Expect ':' after map key.");
+            values.add(expression());
+            if(!match(TokenType.COMMA)) break;
+        }
+        consume(TokenType.RIGHT_BRACE, "Expect '}' after map entries.");
+        return new Expression.MapLiteral(keyword, type, null, keys, values);
     }
 
-    private Token peekNext() {
-        return tokens.get(current+1);
+    private Token peek() {
+        return peekAt(0);
     }
 
     private Token peekPrevious() {
-        return tokens.get(current-1);
+        return token(current-1);
+    }
+
+    private Token peekAt(int distance) {
+        typeAt(distance);
+        return token(current+distance);
+    }
+
+    private Token token(int index) {
+        return tokens.token(index);
+    }
+
+    // scans up to distance tokens past the current one and gives the type of that token
+    private TokenType typeAt(int distance) {
+        while(tokens.size()<=current+distance) {
+            scanner.scan(tokens);
+        }
+        return tokens.type(current+distance);
     }
 
     private boolean isAtEnd() {
-        return peek().tokenType == TokenType.EOF;
+        return typeAt(0) == TokenType.EOF;
     }
 
-    private Token advance() {
+    // returns the number of the token it moved past
+    private int advance() {
         if(!isAtEnd()) current++;
-        return tokens.get(current-1);
+        return current-1;
     }
 
     private boolean check(TokenType tokenType) {
         if(isAtEnd()) return false;
-        return peek().tokenType == tokenType;
+        return typeAt(0) == tokenType;
     }
 
-    private Token consume(TokenType tokenType, String message) {
+    private int consume(TokenType tokenType, String message) {
         if(check(tokenType)) return advance();
         throw error(peek(), message);
     }
@@ -475,17 +829,19 @@ public class Parser {
     }
 
     private ParseError error(Token token, String message) {
-        Main.error(token, message);
+        reporter.error(token, message);
         return new ParseError();
     }
 
     private void synchronize() {
         advance();
         while(!isAtEnd()) {
-            if(peekPrevious().tokenType == TokenType.SEMICOLON) return;
-            switch(peek().tokenType) {
+            if(tokens.type(current-1) == TokenType.SEMICOLON) return;
+            switch(typeAt(0)) {
                 case CLASS:
                 case FUNC:
+                case GO:
+                case SELECT:
                 case VAR:
                 case FOR:
                 case IF:
@@ -0,0 +1,90 @@
+package gointerpreter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+// resolved programs kept on disk, so running an unchanged script skips scanning, parsing and resolving
+// an entry is named after a SHA-256 of the interpreter version, the options that change the tree, the charset
+// the source is decoded with and the source, so editing the script, running it under another default charset
+// or upgrading the interpreter simply misses
+// entries are in the form of TreeEncoding, entries that cannot be read back, like a truncated write, are deleted
+final class ProgramCache {
+    // bump this whenever the tree or what the front end computes on it changes meaning
+    static final String VERSION = "gointerpreter-20";
+    // smaller scripts are scanned and parsed faster than an entry is hashed, read and decoded, they are not cached
+    static final int MIN_SOURCE = 32 * 1024;
+
+    private final Path directory;
+
+    ProgramCache(Path directory) {
+        this.directory = directory;
+    }
+
+    static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".cache", "gointerpreter");
+    }
+
+    String key(ByteBuffer source, Charset charset, boolean optimize) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) (optimize ? 1 : 0));
+            // the same bytes decode to other strings under another charset
+            digest.update(charset.name().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source.duplicate());
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    // null when there is no usable entry
+    List<Statement> load(String key) {
+        Path entry = directory.resolve(key + ".ast");
+        if (!Files.isRegularFile(entry)) return null;
+        try {
+            return TreeEncoding.decode(Files.readAllBytes(entry));
+        } catch (IOException | RuntimeException | StackOverflowError error) {
+            delete(entry);
+            return null;
+        }
+    }
+
+    // caching is best effort, a program that cannot be stored is simply compiled again next time
+    void store(String key, List<Statement> statements) {
+        Path entry = directory.resolve(key + ".ast");
+        Path temporary = null;
+        try {
+            byte[] bytes = TreeEncoding.encode(statements);
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporary, bytes);
+            // readers only ever see complete entries
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | IllegalArgumentException | StackOverflowError error) {
+            if (temporary != null) delete(temporary);
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // a stale entry is retried and replaced on the next run
+        }
+    }
+}
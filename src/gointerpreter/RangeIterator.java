@@ -0,0 +1,92 @@
+package gointerpreter;
+
+// what a range loop walks, for both engines: the indexes and elements of a slice, the keys and values of a map,
+// the byte offsets and runes of a string, for an int n, 0 to n - 1 with no value, or the values received from a
+// channel until it is closed, as keys with no value
+// as in Go the length of a slice is taken when the loop starts, and a map is walked over a copy of its keys,
+// so keys deleted during the loop are skipped and keys added during it are not visited
+// an entry with a NaN key cannot be found again, nor deleted or changed, so its value is taken from a copy too
+final class RangeIterator {
+    private final Slice slice;
+    private final GoMap map;
+    private final Object[] keys;
+    // the values in the order of keys, only when the map has NaN keys
+    private final Object[] values;
+    private final String text;
+    private final long count;
+    private final Channel channel;
+    private final Goroutines goroutines;
+    private final int line;
+    private long position = 0;
+    // the byte offset of the next rune of a string
+    private long offset = 0;
+    // the key and value of the current iteration, valid after next() returned true
+    Object key;
+    Object value;
+
+    private RangeIterator(Slice slice, GoMap map, String text, long count, Channel channel, Goroutines goroutines,
+                          int line) {
+        this.slice = slice;
+        this.map = map;
+        this.keys = map == null ? null : map.keys();
+        this.values = map == null || !map.hasNaNKeys() ? null : map.values();
+        this.text = text;
+        this.count = count;
+        this.channel = channel;
+        this.goroutines = goroutines;
+        this.line = line;
+    }
+
+    private RangeIterator(Slice slice, GoMap map, String text, long count) {
+        this(slice, map, text, count, null, null, 0);
+    }
+
+    // goroutines is what a range over a channel blocks in
+    static RangeIterator of(Object object, Goroutines goroutines, int line) {
+        if (object instanceof Slice) return new RangeIterator((Slice) object, null, null, ((Slice) object).length);
+        if (object instanceof GoMap) return new RangeIterator(null, (GoMap) object, null, 0);
+        if (Rope.isString(object)) return new RangeIterator(null, null, object.toString(), 0);
+        if (object instanceof Long) return new RangeIterator(null, null, null, (long) object);
+        if (object instanceof Channel) return new RangeIterator(null, null, null, 0, (Channel) object, goroutines, line);
+        throw new RuntimeError(line, "Cannot range over " + Interpreter.stringify(object) + ".");
+    }
+
+    boolean next() {
+        if (channel != null) {
+            Object received = channel.receiveOrClosed(goroutines, line);
+            if (received == Channel.CLOSED) return false;
+            key = received;
+            return true;
+        }
+        if (map != null) {
+            while (position < keys.length) {
+                Object candidate = keys[(int) position++];
+                if (GoMap.isNaN(candidate)) {
+                    key = candidate;
+                    value = values[(int) position - 1];
+                    return true;
+                }
+                int at = map.find(candidate, 0);
+                if (at < 0) continue;
+                key = candidate;
+                value = map.valueAt(at);
+                return true;
+            }
+            return false;
+        }
+        if (text != null) {
+            if (position >= text.length()) return false;
+            int rune = text.codePointAt((int) position);
+            key = Arithmetic.box(offset);
+            value = Arithmetic.box(rune);
+            position += Character.charCount(rune);
+            offset += rune < 0x80 ? 1 : rune < 0x800 ? 2 : rune < 0x10000 ? 3 : 4;
+            return true;
+        }
+        if (position >= count) return false;
+        key = Arithmetic.box(position);
+        value = slice == null ? null : slice.get(key, 0);
+        position++;
+        return true;
+    }
+}
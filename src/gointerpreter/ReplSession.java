@@ -0,0 +1,65 @@
+package gointerpreter;
+
+import java.util.List;
+
+// an interactive session: inputs are parsed as if they were in main and run against the globals that the
+// engine keeps between them
+// nothing of an input outlives its execution except the values it stored, so the session does not grow
+// with the number of inputs
+class ReplSession {
+    // the lines of an input whose braces are still open
+    private final StringBuilder pending = new StringBuilder();
+    private int depth = 0;
+    private final Main main;
+
+    ReplSession(Main main) {
+        this.main = main;
+    }
+
+    // true while an input is incomplete and more lines are expected
+    boolean isPending() {
+        return pending.length() > 0;
+    }
+
+    void input(String line) {
+        pending.append(line).append('\n');
+        depth += braceDepth(line);
+        if (depth > 0) return;
+        String source = pending.toString();
+        pending.setLength(0);
+        depth = 0;
+        run(source);
+        main.reporter.reset();
+    }
+
+    // later inputs may reassign globals, so an input is never optimized on its own
+    private void run(String source) {
+        Parser parser = new Parser(new Scanner(source, main.reporter), true);
+        List<Statement> statements = parser.parse();
+        if (main.reporter.hadError) return;
+        new Resolver(main.reporter).resolve(statements);
+        if (main.reporter.hadError) return;
+        main.execute(statements);
+    }
+
+    // braces opened minus braces closed on the line, ignoring strings and comments
+    private static int braceDepth(String line) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inString) {
+                if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '/' && i + 1 < line.length() && line.charAt(i + 1) == '/') {
+                break;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            }
+        }
+        return depth;
+    }
+}
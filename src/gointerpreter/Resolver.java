@@ -1,18 +1,36 @@
 package gointerpreter;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
 public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void>{
-    private final Interpreter interpreter;
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    private final Stack<Map<String, Local>> scopes = new Stack<>();
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
-
-    Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    // number of loops around the statement being resolved, within the current function
+    private int loopDepth = 0;
+    // number of selects around the statement, break leaves a select as well as a loop
+    private int selectDepth = 0;
+    // the labels of the labelled loops around the statement, within the current function
+    private List<String> labels = new ArrayList<>();
+    private final ErrorReporter reporter;
+
+    Resolver(ErrorReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    // a local variable of the scope being resolved, slots are handed out in declaration order
+    private static class Local {
+        final int slot;
+        boolean defined;
+
+        Local(int slot, boolean defined) {
+            this.slot = slot;
+            this.defined = defined;
+        }
     }
 
     private enum ClassType {
@@ -43,70 +61,111 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
     }
 
     private void beginScope() {
-        scopes.push(new HashMap<String, Boolean>());
+        scopes.push(new HashMap<String, Local>());
     }
 
-    private void endScope() {
-        scopes.pop();
+    // returns the number of slots the scope needs at runtime
+    private int endScope() {
+        return scopes.pop().size();
     }
 
-    private void declare(Token name) {
-        if (scopes.isEmpty()) return;
-        Map<String, Boolean> scope = scopes.peek();
-        if (scope.containsKey(name.lexeme)) {
-            Main.error(name, "Already a variable with this name in this scope.");
+    // returns the slot of the new local, or -1 for a global
+    private int declare(Token name) {
+        if (scopes.isEmpty()) return -1;
+        Map<String, Local> scope = scopes.peek();
+        Local local = scope.get(name.lexeme);
+        if (local != null) {
+            reporter.error(name, "Already a variable with this name in this scope.");
+            local.defined = false;
+            return local.slot;
         }
-        scope.put(name.lexeme, false);
+        local = new Local(scope.size(), false);
+        scope.put(name.lexeme, local);
+        return local.slot;
     }
 
     private void define(Token name) {
         if (scopes.isEmpty()) return;
-        scopes.peek().put(name.lexeme, true);
+        scopes.peek().get(name.lexeme).defined = true;
+    }
+
+    private void resolveLocal(Expression.Resolvable expression,Token token) {
+        expression.depth = depthOf(token.lexeme);
+        if (expression.depth != Expression.GLOBAL) {
+            expression.slot = scopes.get(scopes.size() - 1 - expression.depth).get(token.lexeme).slot;
+        }
     }
 
-    private void resolveLocal(Expression expression,Token token) {
+    private int depthOf(String name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(token.lexeme)) {
-                interpreter.resolve(expression, scopes.size() - 1 - i);
-                return;
-            }
+            if (scopes.get(i).containsKey(name)) return scopes.size() - 1 - i;
         }
+        return Expression.GLOBAL;
     }
 
     private void resolveFunction(Statement.Function function, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
+        int enclosingLoopDepth = loopDepth;
+        int enclosingSelectDepth = selectDepth;
+        List<String> enclosingLabels = labels;
         currentFunction = type;
+        loopDepth = 0;
+        selectDepth = 0;
+        labels = new ArrayList<>();
         beginScope();
+        // methods get their receiver in slot 0, ahead of the parameters
+        if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+            scopes.peek().put("this", new Local(0, true));
+        }
         for (Token param : function.parameters) {
             declare(param);
             define(param);
         }
         resolve(function.body);
-        endScope();
+        function.slotCount = endScope();
         currentFunction = enclosingFunction;
+        loopDepth = enclosingLoopDepth;
+        selectDepth = enclosingSelectDepth;
+        labels = enclosingLabels;
     }
 
     public Void visitBlockStatement(Statement.Block statement) {
+        if (!declaresLocals(statement.statements)) {
+            resolve(statement.statements);
+            return null;
+        }
         beginScope();
         resolve(statement.statements);
-        endScope();
+        statement.slotCount = endScope();
         return null;
     }
 
+    // whether the statements declare anything in the scope of their block, nested blocks have scopes of their own
+    private static boolean declaresLocals(List<Statement> statements) {
+        for (Statement statement : statements) {
+            if (statement instanceof Statement.Var || statement instanceof Statement.Initializer
+                    || statement instanceof Statement.Function || statement instanceof Statement.Class) {
+                return true;
+            }
+            if (statement instanceof Statement.Lookup && ((Statement.Lookup) statement).declare) return true;
+        }
+        return false;
+    }
+
     public Void visitExpressionStatement(Statement.ExpressionStmt statement) {
         resolve(statement.expression);
         return null;
     }
 
     public Void visitFunctionStatement(Statement.Function statement) {
-        declare(statement.name);
+        statement.slot = declare(statement.name);
         define(statement.name);
         resolveFunction(statement, FunctionType.FUNCTION);
         return null;
     }
 
     public Void visitClassStatement(Statement.Class statement) {
-        declare(statement.name);
+        statement.slot = declare(statement.name);
         define(statement.name);
         ClassType enclosingClass = currentClass;
         currentClass = ClassType.CLASS;
@@ -114,10 +173,8 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
             currentClass = ClassType.SUBCLASS;
             resolve(statement.superclass);
             beginScope();
-            scopes.peek().put("super", true);
+            scopes.peek().put("super", new Local(0, true));
         }
-        beginScope();
-        scopes.peek().put("this", true);
         for (Statement.Function method : statement.methods) {
             FunctionType declaration = FunctionType.METHOD;
             if (method.name.lexeme.equals("init")) {
@@ -125,7 +182,6 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
             }
             resolveFunction(method, declaration);
         }
-        endScope();
         if (statement.superclass != null) endScope();
         currentClass = enclosingClass;
         return null;
@@ -145,11 +201,11 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
 
     public Void visitReturnStatement(Statement.Return statement) {
         if (currentFunction == FunctionType.NONE) {
-            Main.error(statement.keyword, "Cannot return from top-level code.");
+            reporter.error(statement.keyword, "Cannot return from top-level code.");
         }
         if (statement.value != null) {
             if (currentFunction == FunctionType.INITIALIZER) {
-                Main.error(statement.keyword, "Cannot return a value from an initializer.");
+                reporter.error(statement.keyword, "Cannot return a value from an initializer.");
             }
             resolve(statement.value);
         }
@@ -157,7 +213,7 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
     }
 
     public Void visitVarStatement(Statement.Var statement) {
-        declare(statement.name);
+        statement.slot = declare(statement.name);
         if (statement.initializer != null) {
             resolve(statement.initializer);
         }
@@ -166,7 +222,7 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
     }
 
     public Void visitInitializerStatement(Statement.Initializer statement) {
-        declare(statement.name);
+        statement.slot = declare(statement.name);
         if (statement.initializer != null) {
             resolve(statement.initializer);
         }
@@ -176,21 +232,122 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
 
     public Void visitWhileStatement(Statement.While statement) {
         resolve(statement.condition);
+        beginLoop(statement.label);
         resolve(statement.body);
+        endLoop(statement.label);
         return null;
     }
 
     public Void visitForStatement(Statement.For statement) {
-        resolve(statement.initializer);
+        if (statement.initializer != null) resolve(statement.initializer);
         resolve(statement.condition);
-        resolve(statement.increment);
+        if (statement.increment != null) resolve(statement.increment);
+        beginLoop(statement.label);
         resolve(statement.body);
+        endLoop(statement.label);
+        return null;
+    }
+
+    private void beginLoop(Token label) {
+        loopDepth++;
+        if (label == null) return;
+        if (labels.contains(label.lexeme)) {
+            reporter.error(label, "Label '" + label.lexeme + "' is already used by an enclosing loop.");
+        }
+        labels.add(label.lexeme);
+    }
+
+    private void endLoop(Token label) {
+        loopDepth--;
+        if (label != null) labels.remove(labels.size() - 1);
+    }
+
+    public Void visitBreakStatement(Statement.Break statement) {
+        if (statement.label != null) {
+            checkLabel(statement.label);
+        } else if (loopDepth == 0 && selectDepth == 0) {
+            reporter.error(statement.keyword, "Cannot use 'break' outside of a loop.");
+        }
+        return null;
+    }
+
+    public Void visitContinueStatement(Statement.Continue statement) {
+        if (statement.label != null) {
+            checkLabel(statement.label);
+        } else if (loopDepth == 0) {
+            reporter.error(statement.keyword, "Cannot use 'continue' outside of a loop.");
+        }
+        return null;
+    }
+
+    // a labelled break or continue names a loop around it in the same function
+    private void checkLabel(Token label) {
+        if (!labels.contains(label.lexeme)) {
+            reporter.error(label, "No enclosing loop is labelled '" + label.lexeme + "'.");
+        }
+    }
+
+    public Void visitGoStatement(Statement.Go statement) {
+        resolve(statement.call);
+        return null;
+    }
+
+    public Void visitSendStatement(Statement.Send statement) {
+        resolve(statement.channel);
+        resolve(statement.value);
+        return null;
+    }
+
+    public Void visitSelectStatement(Statement.Select statement) {
+        for (Statement.Select.Case selectCase : statement.cases) {
+            if (selectCase.channel != null) resolve(selectCase.channel);
+            if (selectCase.value != null) resolve(selectCase.value);
+        }
+        selectDepth++;
+        for (Statement.Select.Case selectCase : statement.cases) {
+            if (selectCase.declare) beginScope();
+            bind(selectCase.target, selectCase.declare);
+            bind(selectCase.ok, selectCase.declare);
+            resolve(selectCase.body);
+            if (selectCase.declare) selectCase.slotCount = endScope();
+        }
+        selectDepth--;
+        return null;
+    }
+
+    public Void visitLookupStatement(Statement.Lookup statement) {
+        resolve(statement.source);
+        bind(statement.value, statement.declare);
+        bind(statement.ok, statement.declare);
+        return null;
+    }
+
+    // a target of := is declared unless the scope has it already, then it is assigned like a target of =
+    private void bind(Expression.Variable target, boolean declare) {
+        if (target == null) return;
+        if (declare && (scopes.isEmpty() || !scopes.peek().containsKey(target.name.lexeme))) {
+            declare(target.name);
+            define(target.name);
+        }
+        resolveLocal(target, target.name);
+    }
+
+    public Void visitRangeStatement(Statement.Range statement) {
+        resolve(statement.object);
+        if (statement.declare) beginScope();
+        bind(statement.key, statement.declare);
+        bind(statement.value, statement.declare);
+        beginLoop(statement.label);
+        resolve(statement.body);
+        endLoop(statement.label);
+        if (statement.declare) statement.slotCount = endScope();
         return null;
     }
 
     public Void visitVariableExpression(Expression.Variable expression) {
-        if (!scopes.isEmpty() && scopes.peek().get(expression.name.lexeme) == Boolean.FALSE) {
-            Main.error(expression.name, "Cannot read local variable in its own initializer.");
+        if (!scopes.isEmpty() && scopes.peek().containsKey(expression.name.lexeme)
+                && !scopes.peek().get(expression.name.lexeme).defined) {
+            reporter.error(expression.name, "Cannot read local variable in its own initializer.");
         }
         resolveLocal(expression, expression.name);
         return null;
@@ -247,9 +404,57 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
         return null;
     }
 
+    public Void visitReceiveExpression(Expression.Receive expression) {
+        resolve(expression.channel);
+        return null;
+    }
+
+    public Void visitMakeExpression(Expression.Make expression) {
+        for (Expression argument : expression.arguments) {
+            resolve(argument);
+        }
+        return null;
+    }
+
+    public Void visitIndexExpression(Expression.Index expression) {
+        resolve(expression.object);
+        resolve(expression.index);
+        return null;
+    }
+
+    public Void visitSetIndexExpression(Expression.SetIndex expression) {
+        resolve(expression.object);
+        resolve(expression.index);
+        resolve(expression.value);
+        return null;
+    }
+
+    public Void visitSlicingExpression(Expression.Slicing expression) {
+        resolve(expression.object);
+        if (expression.low != null) resolve(expression.low);
+        if (expression.high != null) resolve(expression.high);
+        return null;
+    }
+
+    public Void visitSliceLiteralExpression(Expression.SliceLiteral expression) {
+        for (Expression element : expression.elements) {
+            resolve(element);
+        }
+        return null;
+    }
+
+    public Void visitMapLiteralExpression(Expression.MapLiteral expression) {
+        if (expression.size != null) resolve(expression.size);
+        for (int i = 0; i < expression.keys.size(); i++) {
+            resolve(expression.keys.get(i));
+            resolve(expression.values.get(i));
+        }
+        return null;
+    }
+
     public Void visitThisExpression(Expression.This expression) {
         if (currentClass == ClassType.NONE) {
-            Main.error(expression.keyword, "Cannot use 'this' outside of a class.");
+            reporter.error(expression.keyword, "Cannot use 'this' outside of a class.");
             return null;
         }
         resolveLocal(expression, expression.keyword);
@@ -258,11 +463,12 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
 
     public Void visitSuperExpression(Expression.Super expression) {
         if (currentClass == ClassType.NONE) {
-            Main.error(expression.keyword, "Cannot use 'super' outside of a class.");
+            reporter.error(expression.keyword, "Cannot use 'super' outside of a class.");
         } else if (currentClass!= ClassType.SUBCLASS) {
-            Main.error(expression.keyword, "Cannot use 'super' in a class with no superclass.");
+            reporter.error(expression.keyword, "Cannot use 'super' in a class with no superclass.");
         }
         resolveLocal(expression, expression.keyword);
+        expression.thisDepth = depthOf("this");
         return null;
     }
 }
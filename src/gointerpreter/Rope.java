@@ -0,0 +1,76 @@
+package gointerpreter;
+
+// a string made by concatenation: the first length chars of a StringBuilder that longer ropes may share
+// s = s + piece appends to the builder in place when s is the longest rope on it, so building a string in a
+// loop is linear instead of copying everything built so far at every step
+// the builder only ever grows and a rope never reads past its length, so each rope is as immutable as a Go
+// string; a rope that is not the longest on its builder is copied on concatenation, like a String would be
+// it is flattened to a String, once, when it is printed, compared or read
+final class Rope implements CharSequence {
+    // shorter results stay Strings, copying them costs less than keeping a builder
+    private static final int MIN_LENGTH = 64;
+
+    private final StringBuilder builder;
+    private final int length;
+    private volatile String flat;
+
+    private Rope(StringBuilder builder, int length) {
+        this.builder = builder;
+        this.length = length;
+    }
+
+    static boolean isString(Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    // the String a rope stands for, any other value as it is
+    static Object flatten(Object value) {
+        return value instanceof Rope ? value.toString() : value;
+    }
+
+    static Object concat(CharSequence left, CharSequence right) {
+        int length = left.length() + right.length();
+        if (length < MIN_LENGTH) return left.toString() + right;
+        String tail = right.toString();
+        if (left instanceof Rope) {
+            Rope rope = (Rope) left;
+            // goroutines may append to the same rope, only one of them can extend the builder
+            synchronized (rope.builder) {
+                if (rope.builder.length() == rope.length) {
+                    rope.builder.append(tail);
+                    return new Rope(rope.builder, length);
+                }
+            }
+        }
+        StringBuilder builder = new StringBuilder(length * 2);
+        builder.append(left.toString()).append(tail);
+        return new Rope(builder, length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String text = flat;
+        if (text == null) {
+            synchronized (builder) {
+                text = builder.substring(0, length);
+            }
+            flat = text;
+        }
+        return text;
+    }
+}
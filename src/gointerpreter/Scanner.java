@@ -1,62 +1,140 @@
 package gointerpreter;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.lang.String;
 import java.lang.Object;
-import java.lang.Double;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
 
 import static gointerpreter.TokenType.*;
 
+// the source is read through a window of buffer, so only the token being scanned has to be in memory
+// start and pos_index are positions in the window, refilling it moves the current token to the front
 public class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<Token>();
+    private final Reader reader;
+    final ErrorReporter reporter;
+    private char[] buffer = new char[8192];
+    private int limit = 0;
+    private boolean atEof = false;
+    // where scanToken puts the token it finds
+    private TokenBuffer tokens;
+    private final Symbols symbols = new Symbols();
+    // punctuation lexemes, made once per scanner from their first occurrence
+    private final String[] fixed = new String[TokenType.values().length];
     private int start = 0;
     private int pos_index = 0;
     private int line = 1;
+    // set when a problem was printed without making the program fail, such programs are not cached
+    boolean hadWarning = false;
 
-    private static final Map<String, TokenType> keywords;
+    // the text of each keyword, indexed by the ordinal of its token type
+    private static final String[] keywords = new String[TokenType.values().length];
 
     static {
-        keywords = new HashMap<>();
-        keywords.put("&&",    AND);
-        keywords.put("class",  CLASS);
-        keywords.put("else",   ELSE);
-        keywords.put("false",  FALSE);
-        keywords.put("for",    FOR);
-        keywords.put("fun",    FUN);
-        keywords.put("if",     IF);
-        keywords.put("nil",    NIL);
-        keywords.put("||",     OR);
-        keywords.put("Println",  PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super",  SUPER);
-        keywords.put("this",   THIS);
-        keywords.put("true",   TRUE);
-        keywords.put("var",    VAR);
-        keywords.put("while",  WHILE);
-        keywords.put("package",PACKAGE);
-        keywords.put("import", IMPORT);
-        keywords.put("main()",   MAIN);
-        keywords.put("main",    PACKAGE_MAIN);
-        keywords.put("func",   FUNC);
-        keywords.put("fmt",    FMT);
+        keyword(CLASS,    "class");
+        keyword(ELSE,     "else");
+        keyword(FALSE,    "false");
+        keyword(FOR,      "for");
+        keyword(FUN,      "fun");
+        keyword(IF,       "if");
+        keyword(NIL,      "nil");
+        keyword(PRINT,    "Println");
+        keyword(RETURN,   "return");
+        keyword(SUPER,    "super");
+        keyword(THIS,     "this");
+        keyword(TRUE,     "true");
+        keyword(VAR,      "var");
+        keyword(WHILE,    "while");
+        keyword(PACKAGE,  "package");
+        keyword(IMPORT,   "import");
+        keyword(MAIN,     "main()");
+        keyword(PACKAGE_MAIN, "main");
+        keyword(FUNC,     "func");
+        keyword(FMT,      "fmt");
+        keyword(BREAK,    "break");
+        keyword(CONTINUE, "continue");
+        keyword(GO,       "go");
+        keyword(CHAN,     "chan");
+        keyword(SELECT,   "select");
+        keyword(CASE,     "case");
+        keyword(DEFAULT,  "default");
+        keyword(MAP,      "map");
+        keyword(RANGE,    "range");
+    }
+
+    private static void keyword(TokenType type, String text) {
+        keywords[type.ordinal()] = text;
     }
 
     //Constructor for Scanner Class
     public Scanner(String source) {
-        this.source = source;
+        this(source, new ErrorReporter());
+    }
+
+    Scanner(String source, ErrorReporter reporter) {
+        this(new StringReader(source), reporter);
+    }
+
+    public Scanner(Reader reader) {
+        this(reader, new ErrorReporter());
+    }
+
+    Scanner(Reader reader, ErrorReporter reporter) {
+        this.reader = reader;
+        this.reporter = reporter;
+    }
+
+    // scans a file through a read-only memory mapping, decoding it as it goes
+    static Scanner forFile(Path path, Charset charset) throws IOException {
+        return forBytes(map(path), charset);
+    }
+
+    static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    static Scanner forBytes(ByteBuffer bytes, Charset charset) {
+        return forBytes(bytes, charset, new ErrorReporter());
     }
 
-    List<Token> scanTokens() {
-        while(!isAtEnd()) {
+    static Scanner forBytes(ByteBuffer bytes, Charset charset, ErrorReporter reporter) {
+        // malformed input is replaced like new String(bytes, charset) would
+        return new Scanner(Channels.newReader(new BufferChannel(bytes), charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), -1), reporter);
+    }
+
+    // scans just far enough to add one token to tokens, EOF is added again once the source is exhausted
+    void scan(TokenBuffer tokens) {
+        this.tokens = tokens;
+        int count = tokens.size();
+        while(tokens.size()==count) {
+            if(isAtEnd()) {
+                tokens.add(TokenType.EOF,"",-1,null,line);
+                return;
+            }
             start=pos_index;
             scanToken();
         }
-        tokens.add(new Token(TokenType.EOF,"",null,line));
-        return tokens;
+    }
+
+    Symbols symbols() {
+        return symbols;
+    }
+
+    private void warning(String message) {
+        reporter.warning(message);
+        hadWarning=true;
     }
 
     private void scanToken() {
@@ -66,28 +144,31 @@ public class Scanner {
             case ')':addToken(TokenType.RIGHT_PAREN);break;
             case '{':addToken(TokenType.LEFT_BRACE);break;
             case '}':addToken(TokenType.RIGHT_BRACE);break;
+            case '[':addToken(TokenType.LEFT_BRACKET);break;
+            case ']':addToken(TokenType.RIGHT_BRACKET);break;
             case ',':addToken(TokenType.COMMA);break;
             case '.':addToken(TokenType.DOT);break;
             case '-':addToken(TokenType.MINUS);break;
             case '+':addToken(TokenType.PLUS);break;
             case ';':addToken(TokenType.SEMICOLON);break;
             case '*':addToken(TokenType.STAR);break;
+            case '%':addToken(TokenType.PERCENT);break;
             case '!':addToken(match('=') ? TokenType.BANG_EQUAL : TokenType.BANG); break;
             case '=':addToken(match('=') ? TokenType.EQUAL_EQUAL : TokenType.EQUAL); break;
-            case '<':addToken(match('=') ? TokenType.LESS_EQUAL : TokenType.LESS); break;
+            case '<':addToken(match('=') ? TokenType.LESS_EQUAL : match('-') ? TokenType.ARROW : TokenType.LESS); break;
             case '>':addToken(match('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER); break;
             case ':':addToken(match('=') ? TokenType.COLON_EQUAL : TokenType.COLON); break;
             case '/':
                 if (match('/')) {
                     // A comment goes until the end of the line.
-                    while (peek() != '\n' && !isAtEnd()) advance();
+                    while (peek() != '\n' && !isAtEnd()) skip();
                 } else if (match('*')) {
                     while (peek() != '*' && peekNext() != '/' && !isAtEnd()) {
                         if (peek() == '\n') line++;
-                        advance();
+                        skip();
                     }
                     if (isAtEnd()) {
-                        System.out.println("Error: Unterminated Comment");
+                        warning("Unterminated Comment");
                         return;
                     }
                     advance();
@@ -109,7 +190,7 @@ public class Scanner {
                 } else if (isAlphabet(c)) {
                     identifier();
                 } else {
-                    System.out.println("Error: Unexpected Character");
+                    warning("Unexpected Character");
                 }
         }
     }
@@ -125,8 +206,18 @@ public class Scanner {
         if(peek()=='.' && isDigit(peekNext())) {
             advance();
             while(isDigit(peek())) advance();
+            String text = text(start,pos_index);
+            tokens.add(TokenType.NUMBER,text,-1,Double.parseDouble(text),line);
+            return;
+        }
+        // without a fraction it is an int, kept as a 64 bit integer like Go's int on 64 bit platforms
+        String text = text(start,pos_index);
+        try {
+            tokens.add(TokenType.NUMBER,text,-1,Arithmetic.box(Long.parseLong(text)),line);
+        } catch (NumberFormatException error) {
+            reporter.error(line, "Integer constant overflows int.");
+            tokens.add(TokenType.NUMBER,text,-1,Arithmetic.box(0),line);
         }
-        addToken(TokenType.NUMBER,Double.parseDouble(source.substring(start,pos_index)));
     }
 
     //String Literal
@@ -136,37 +227,87 @@ public class Scanner {
             advance();
         }
         if(isAtEnd()) {
-            System.out.println("Error: Unterminated String");
+            warning("Unterminated String");
             return;
         }
 
         // to close the string by a quote
         advance();
 
-        // removing the quotes from the string
-        addToken(TokenType.STRING,source.substring(start+1,pos_index-1));
+        // removing the quotes from the string, the lexeme with quotes is only made if the parser asks for it
+        tokens.add(TokenType.STRING,null,-1,text(start+1,pos_index-1),line);
     }
 
     //Identifier Literal
     private void identifier() {
-        while(isAlphabet(peek())) advance();
-        // to check if the identifier is a keyword
-        String text = source.substring(start,pos_index);
-        if(text.equals("main")==true) {
-            if(match('(')){
-                if(match(')')) {
+        // digits may follow the first letter, as in float64
+        while(isAlphaNumeric(peek())) advance();
+        // to check if the identifier is a keyword, straight on the chars so keywords never allocate
+        TokenType type = keyword();
+        if(type==PACKAGE_MAIN && peek()=='(') {
+            advance();
+            if(match(')')) {
+                type=MAIN;
+            }
+            else {
+                reporter.error(line, "main() is incomplete");
+                type=null;
+            }
+        }
+        if(type!=null) {
+            tokens.add(type,keywords[type.ordinal()],-1,null,line);
+            return;
+        }
+        // if it is not a keyword then it is an identifier, names are interned so repeated ones do not allocate
+        int symbol = symbols.intern(buffer,start,pos_index-start);
+        tokens.add(IDENTIFIER,symbols.name(symbol),symbol,null,line);
+    }
 
+    // the first character picks the candidates, then the length and the remaining characters have to match
+    private TokenType keyword() {
+        switch(buffer[start]) {
+            case 'b': return keyword(BREAK);
+            case 'c':
+                switch(pos_index-start) {
+                    case 4: return buffer[start+1]=='a' ? keyword(CASE) : keyword(CHAN);
+                    case 5: return keyword(CLASS);
                 }
-                else {
-                    Main.error(line, "main() is incomplete");
+                return keyword(CONTINUE);
+            case 'd': return keyword(DEFAULT);
+            case 'e': return keyword(ELSE);
+            case 'f':
+                switch(pos_index-start) {
+                    case 3:
+                        if(buffer[start+1]=='o') return keyword(FOR);
+                        if(buffer[start+1]=='u') return keyword(FUN);
+                        return keyword(FMT);
+                    case 4: return keyword(FUNC);
+                    case 5: return keyword(FALSE);
                 }
-            }
+                return null;
+            case 'g': return keyword(GO);
+            case 'i': return pos_index-start==2 ? keyword(IF) : keyword(IMPORT);
+            case 'm': return pos_index-start==3 ? keyword(MAP) : keyword(PACKAGE_MAIN);
+            case 'n': return keyword(NIL);
+            case 'p': return keyword(PACKAGE);
+            case 'P': return keyword(PRINT);
+            case 'r': return pos_index-start==5 ? keyword(RANGE) : keyword(RETURN);
+            case 's': return pos_index-start==6 ? keyword(SELECT) : keyword(SUPER);
+            case 't': return pos_index-start>1 && buffer[start+1]=='h' ? keyword(THIS) : keyword(TRUE);
+            case 'v': return keyword(VAR);
+            case 'w': return keyword(WHILE);
+        }
+        return null;
+    }
+
+    private TokenType keyword(TokenType type) {
+        String text = keywords[type.ordinal()];
+        int length = pos_index-start;
+        if(length!=text.length()) return null;
+        for(int i=1;i<length;i++) {
+            if(buffer[start+i]!=text.charAt(i)) return null;
         }
-        text = source.substring(start,pos_index);
-        TokenType type = keywords.get(text);
-        // if it is not a keyword then it is an identifier
-        if(type==null) type=IDENTIFIER;
-        addToken(type);
+        return type;
     }
 
     //////////////////////////////////////////////////////////
@@ -191,51 +332,116 @@ public class Scanner {
     // gives the char at the current position and increases the position index
     private char advance() {
         pos_index++;
-        return source.charAt(pos_index-1);
+        return buffer[pos_index-1];
+    }
+
+    // advances over a character that is not part of any token, so the window does not have to keep it
+    private void skip() {
+        advance();
+        start=pos_index;
     }
 
     //checks if pos_index is at the end
     private boolean isAtEnd() {
-        return pos_index>=source.length();
+        return !available(0);
     }
 
     //gives the character at pos_index
     private char peek() {
         if(isAtEnd()) return '\0';
-        return source.charAt(pos_index);
+        return buffer[pos_index];
     }
 
     //gives the charcter at pos_index+1
     private char peekNext() {
-        if(pos_index+1>=source.length()) return '\0';
-        return source.charAt(pos_index+1);
+        if(!available(1)) return '\0';
+        return buffer[pos_index+1];
     }
 
     private boolean match(char expected) {
         if(isAtEnd()) return false;
         // checks if the character at pos_index is equal to expected
-        if(source.charAt(pos_index)!=expected) return false;
+        if(buffer[pos_index]!=expected) return false;
         pos_index++;
         return true;
     }
 
-    private boolean matchNext(char expected) {
-        if(isAtEnd()) return false;
-        // checks if the character at pos_index is equal to expected
-        if(source.charAt(pos_index+1)!=expected) return false;
-        pos_index++;
+    // true when the window holds the character ahead places after pos_index, reading more of the source if needed
+    // it is counted from pos_index because refilling the window moves pos_index
+    private boolean available(int ahead) {
+        while(pos_index+ahead>=limit) {
+            if(atEof) return false;
+            fill();
+        }
         return true;
     }
 
-    // Make a token and make it an object and add it to the tokens list and add literal associated to it
-    private void addToken(TokenType tokenType, Object literal) {
-        String token_text = source.substring(start,pos_index);
-        tokens.add(new Token(tokenType,token_text,literal,line));
+    private void fill() {
+        if(start>0) {
+            // everything before the current token has been scanned already
+            System.arraycopy(buffer,start,buffer,0,limit-start);
+            limit-=start;
+            pos_index-=start;
+            start=0;
+        }
+        if(limit==buffer.length) {
+            // a single token longer than the window
+            char[] grown = new char[buffer.length*2];
+            System.arraycopy(buffer,0,grown,0,limit);
+            buffer=grown;
+        }
+        try {
+            int read = reader.read(buffer,limit,buffer.length-limit);
+            if(read<0) {
+                atEof=true;
+                reader.close();
+            } else {
+                limit+=read;
+            }
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private String text(int from, int to) {
+        return new String(buffer,from,to-from);
     }
 
-    // Polymorphism
-    // Used to add Token
+    // Used to add a punctuation token, its lexeme is the same every time
     private void addToken(TokenType tokenType) {
-        addToken(tokenType,null);
+        String token_text = fixed[tokenType.ordinal()];
+        if(token_text==null) {
+            token_text = text(start,pos_index);
+            fixed[tokenType.ordinal()] = token_text;
+        }
+        tokens.add(tokenType,token_text,-1,null,line);
+    }
+
+    // lets Channels.newReader decode straight out of a mapped file
+    private static class BufferChannel implements ReadableByteChannel {
+        private final ByteBuffer bytes;
+        private boolean open = true;
+
+        BufferChannel(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        public int read(ByteBuffer target) {
+            if(!bytes.hasRemaining()) return -1;
+            int count = Math.min(target.remaining(), bytes.remaining());
+            ByteBuffer slice = bytes.slice();
+            slice.limit(count);
+            target.put(slice);
+            bytes.position(bytes.position()+count);
+            return count;
+        }
+
+        public boolean isOpen() {
+            return open;
+        }
+
+        public void close() {
+            open = false;
+        }
     }
 }
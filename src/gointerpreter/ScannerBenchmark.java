@@ -0,0 +1,131 @@
+package gointerpreter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// measures how fast the Scanner turns source files into tokens, without parsing them
+// usage: ScannerBenchmark [test file directory] [synthetic file size in MB]
+// the test files are tiny, so they are scanned from memory in batches of about a megabyte after a warm up
+// the synthetic file, made by repeating the test files up to the given size, is scanned through its mapping
+// the best of several rounds is reported
+// the synthetic scan has to find as many tokens as the test files scanned one by one, or no rate is reported
+public class ScannerBenchmark {
+    private static final int ROUNDS = 20;
+    private static final int LARGE_ROUNDS = 3;
+    private static final int BATCH_BYTES = 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        String directory = args.length > 0 ? args[0] : "TestFiles_and_Output/TestFile";
+        int megabytes = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        File[] files = new File(directory).listFiles(File::isFile);
+        if (files == null || files.length == 0) {
+            System.out.println("No test files in " + directory);
+            return;
+        }
+        Arrays.sort(files);
+        List<byte[]> sources = new ArrayList<>();
+        for (File file : files) {
+            sources.add(Files.readAllBytes(file.toPath()));
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            for (byte[] source : sources) {
+                scanBatch(new String(source, Charset.defaultCharset()), source.length);
+            }
+        }
+        for (int i = 0; i < files.length; i++) {
+            byte[] source = sources.get(i);
+            String text = new String(source, Charset.defaultCharset());
+            long best = Long.MAX_VALUE;
+            int count = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                count = scanBatch(text, source.length);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            report(files[i].getName(), source.length, count, batch(source.length) * (long) source.length, best);
+        }
+
+        Path synthetic = Files.createTempFile("scanner-benchmark", ".go");
+        try {
+            long cycles = write(synthetic, sources, (long) megabytes * 1024 * 1024);
+            long expected = cycles * tokensPerCycle(sources) + 1;
+            long size = Files.size(synthetic);
+            long best = Long.MAX_VALUE;
+            int count = 0;
+            for (int round = 0; round < LARGE_ROUNDS; round++) {
+                long start = System.nanoTime();
+                count = scan(Scanner.forFile(synthetic, Charset.defaultCharset()));
+                best = Math.min(best, System.nanoTime() - start);
+                if (count != expected) {
+                    throw new IllegalStateException("Scanned " + count + " tokens from the synthetic file, expected "
+                            + expected + ".");
+                }
+            }
+            report("synthetic " + megabytes + "MB", size, count, size, best);
+        } finally {
+            Files.delete(synthetic);
+        }
+    }
+
+    private static void report(String name, long size, int count, long scanned, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-24s %12d bytes %10d tokens %10.1f MB/s%n",
+                name, size, count, scanned / seconds / (1024 * 1024));
+    }
+
+    private static int batch(int size) {
+        return Math.max(1, BATCH_BYTES / Math.max(1, size));
+    }
+
+    // scans text often enough to cover about a megabyte, returns the token count of one scan
+    private static int scanBatch(String text, int size) {
+        int count = 0;
+        for (int i = batch(size); i > 0; i--) {
+            count = scan(new Scanner(text));
+        }
+        return count;
+    }
+
+    // returns the number of tokens, EOF included
+    private static int scan(Scanner scanner) {
+        TokenBuffer tokens = new TokenBuffer();
+        do {
+            scanner.scan(tokens);
+        } while (tokens.type(tokens.size() - 1) != TokenType.EOF);
+        return tokens.size();
+    }
+
+    // the tokens of the test files without their EOFs, which is what one repetition of them in the synthetic file holds
+    private static long tokensPerCycle(List<byte[]> sources) {
+        long count = 0;
+        for (byte[] source : sources) {
+            count += scan(new Scanner(new String(source, Charset.defaultCharset()))) - 1;
+        }
+        return count;
+    }
+
+    // returns how many times the test files were repeated
+    private static long write(Path path, List<byte[]> sources, long size) throws IOException {
+        try (OutputStream output = Files.newOutputStream(path)) {
+            long written = 0;
+            long cycles = 0;
+            while (written < size) {
+                for (byte[] source : sources) {
+                    output.write(source);
+                    output.write('\n');
+                    written += source.length + 1;
+                }
+                cycles++;
+            }
+            return cycles;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package gointerpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// hidden class of an instance: the field names it has so far and the index of each one in its field array
+// every class starts its instances at an empty root shape and adding a field moves the instance along a
+// transition, so instances that get the same fields in the same order end up sharing one shape
+final class Shape {
+    private final Map<String, Integer> offsets;
+    // transitions are shared by every instance of the class, so adding one is synchronized
+    private final Map<String, Shape> transitions = new HashMap<>();
+    final int size;
+
+    Shape() {
+        this(new HashMap<>());
+    }
+
+    private Shape(Map<String, Integer> offsets) {
+        this.offsets = offsets;
+        this.size = offsets.size();
+    }
+
+    // -1 when the shape has no such field
+    int offset(String name) {
+        Integer offset = offsets.get(name);
+        return offset == null ? -1 : offset;
+    }
+
+    // the shape reached by adding name as the next field
+    synchronized Shape withField(String name) {
+        Shape next = transitions.get(name);
+        if (next == null) {
+            Map<String, Integer> grown = new HashMap<>(offsets);
+            grown.put(name, size);
+            next = new Shape(grown);
+            transitions.put(name, next);
+        }
+        return next;
+    }
+
+    // what a Get or Set site saw last time: instances of shape keep the field at offset
+    // a Set that added the field also records the shape it moved the instance to
+    // entries are immutable, so a site swaps the whole entry when it misses
+    static final class Cache {
+        final Shape shape;
+        final int offset;
+        final Shape next;
+
+        Cache(Shape shape, int offset, Shape next) {
+            this.shape = shape;
+            this.offset = offset;
+            this.next = next;
+        }
+    }
+
+    // the methods a call site found for the receiver shapes it has seen, most recent first
+    // a shape belongs to one class and knows its fields, so a hit also proves no field hides the method
+    static final class MethodCache {
+        // a site that misses with this many entries starts its list over, rather than going megamorphic for
+        // good, since every run of a CompiledProgram brings classes, and so shapes, of its own
+        static final int LIMIT = 4;
+
+        final Shape shape;
+        final Function method;
+        final MethodCache next;
+        final int size;
+
+        MethodCache(Shape shape, Function method, MethodCache next) {
+            this.shape = shape;
+            this.method = method;
+            this.next = next;
+            this.size = next == null ? 1 : next.size + 1;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package gointerpreter;
+
+import java.util.Arrays;
+import java.util.List;
+
+// a Go slice: length elements from offset on in a backing array that other slices may share
+// int and float elements are kept unboxed in a long[] or a double[], others in an Object[]
+// slicing shares the array and append writes into it while there is room, as in Go, so slices of one
+// array see each other's writes
+// a nil slice has no array, it is what a slice variable declared without a value holds
+// arrays are slices of a fixed length, they are not copied when they are assigned
+final class Slice {
+    // the kinds of elements
+    static final int INT = 0;
+    static final int FLOAT = 1;
+    static final int STRING = 2;
+    static final int BOOL = 3;
+    static final int ANY = 4;
+
+    private static final String[] NAMES = {"an int", "a float64", "a string", "a bool", "a value"};
+
+    final int kind;
+    private final Object array;
+    private final int offset;
+    final int length;
+    final int capacity;
+
+    private Slice(int kind, Object array, int offset, int length, int capacity) {
+        this.kind = kind;
+        this.array = array;
+        this.offset = offset;
+        this.length = length;
+        this.capacity = capacity;
+    }
+
+    static Slice nil(int kind) {
+        return new Slice(kind, null, 0, 0, 0);
+    }
+
+    boolean isNil() {
+        return array == null;
+    }
+
+    // the kind of elements of the named type
+    static int kind(String type) {
+        switch (type) {
+            case "int": case "int8": case "int16": case "int32": case "int64":
+            case "uint": case "uint8": case "uint16": case "uint32": case "uint64":
+            case "uintptr": case "byte": case "rune":
+                return INT;
+            case "float32": case "float64":
+                return FLOAT;
+            case "string":
+                return STRING;
+            case "bool":
+                return BOOL;
+            default:
+                return ANY;
+        }
+    }
+
+    static Object zero(int kind) {
+        switch (kind) {
+            case INT: return Arithmetic.box(0);
+            case FLOAT: return 0.0;
+            case STRING: return "";
+            case BOOL: return false;
+            default: return null;
+        }
+    }
+
+    private static Object allocate(int kind, int capacity) {
+        switch (kind) {
+            case INT: return new long[capacity];
+            case FLOAT: return new double[capacity];
+            default:
+                Object[] array = new Object[capacity];
+                Object zero = zero(kind);
+                if (zero != null) Arrays.fill(array, zero);
+                return array;
+        }
+    }
+
+    // make([]T, length, capacity), capacity is null when it is left out
+    static Slice make(int kind, Object length, Object capacity, int line) {
+        long size = Interpreter.size(length, line);
+        long room = capacity == null ? size : Interpreter.size(capacity, line);
+        if (size > room) throw new RuntimeError(line, "Length larger than capacity.");
+        return new Slice(kind, allocate(kind, (int) room), 0, (int) size, (int) room);
+    }
+
+    // []T{elements} or, when length is not negative, the array [length]T{elements}
+    static Slice of(int kind, long length, Object[] elements, int line) {
+        int size = length < 0 ? elements.length : (int) length;
+        if (elements.length > size) {
+            throw new RuntimeError(line, "Array index " + size + " out of bounds [0:" + size + "].");
+        }
+        Slice slice = new Slice(kind, allocate(kind, size), 0, size, size);
+        for (int i = 0; i < elements.length; i++) {
+            slice.store(i, elements[i], line);
+        }
+        return slice;
+    }
+
+    static Slice cast(Object value, int line) {
+        if (!(value instanceof Slice)) throw new RuntimeError(line, "Operand must be a slice.");
+        return (Slice) value;
+    }
+
+    Object get(Object index, int line) {
+        return load(offset + index(index, line));
+    }
+
+    void set(Object index, Object value, int line) {
+        store(offset + index(index, line), value, line);
+    }
+
+    // slice[low:high], a bound is null when it is left out
+    Slice slice(Object low, Object high, int line) {
+        long from = low == null ? 0 : bound(low, line);
+        long to = high == null ? length : bound(high, line);
+        if (from > to || to > capacity) {
+            throw new RuntimeError(line, "Slice bounds out of range [" + from + ":" + to + "] with capacity " + capacity + ".");
+        }
+        return new Slice(kind, array, offset + (int) from, (int) (to - from), capacity - (int) from);
+    }
+
+    // append(slice, values[from:]...), a full array is copied to one twice as large
+    // every value is checked before any is written, so a failed append leaves slices sharing the array as they were
+    Slice append(List<Object> values, int from, int line) {
+        int count = values.size() - from;
+        if (count == 0) return this;
+        for (int i = from; i < values.size(); i++) {
+            if (!holds(kind, values.get(i))) throw new RuntimeError(line, "Element must be " + name(kind) + ".");
+        }
+        int needed = length + count;
+        Slice result;
+        if (needed <= capacity) {
+            result = new Slice(kind, array, offset, needed, capacity);
+        } else {
+            int grown = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, 2L * capacity));
+            Object copy = allocate(kind, grown);
+            if (array != null) System.arraycopy(array, offset, copy, 0, length);
+            result = new Slice(kind, copy, 0, needed, grown);
+        }
+        for (int i = 0; i < count; i++) {
+            result.store(result.offset + length + i, values.get(from + i), line);
+        }
+        return result;
+    }
+
+    private int index(Object index, int line) {
+        if (!(index instanceof Long)) throw new RuntimeError(line, "Index must be an int.");
+        long at = (long) index;
+        if (at < 0 || at >= length) {
+            throw new RuntimeError(line, "Index out of range [" + at + "] with length " + length + ".");
+        }
+        return (int) at;
+    }
+
+    private static long bound(Object bound, int line) {
+        if (!(bound instanceof Long) || (long) bound < 0) {
+            throw new RuntimeError(line, "Slice bound must be a non-negative int.");
+        }
+        return (long) bound;
+    }
+
+    private Object load(int at) {
+        switch (kind) {
+            case INT: return Arithmetic.box(((long[]) array)[at]);
+            case FLOAT: return ((double[]) array)[at];
+            default: return ((Object[]) array)[at];
+        }
+    }
+
+    private void store(int at, Object value, int line) {
+        if (!holds(kind, value)) throw new RuntimeError(line, "Element must be " + name(kind) + ".");
+        switch (kind) {
+            case INT:
+                ((long[]) array)[at] = (long) value;
+                return;
+            case FLOAT:
+                ((double[]) array)[at] = Arithmetic.toDouble(value);
+                return;
+        }
+        ((Object[]) array)[at] = value;
+    }
+
+    // whether value can be stored as the given kind, an int is a float too as for an untyped constant
+    static boolean holds(int kind, Object value) {
+        switch (kind) {
+            case INT: return value instanceof Long;
+            case FLOAT: return Arithmetic.isNumber(value);
+            case STRING: return Rope.isString(value);
+            case BOOL: return value instanceof Boolean;
+            default: return true;
+        }
+    }
+
+    // the kind with an article, for errors
+    static String name(int kind) {
+        return NAMES[kind];
+    }
+
+    // what fmt.Println prints, [1 2 3]
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < length; i++) {
+            if (i > 0) text.append(' ');
+            text.append(Interpreter.stringify(load(offset + i)));
+        }
+        return text.append(']').toString();
+    }
+}
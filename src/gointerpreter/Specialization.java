@@ -0,0 +1,274 @@
+package gointerpreter;
+
+// self-specializing implementations of the operator expressions, used by the interpreter's --specialize mode
+// a site starts without a node, installs the variant matching the operands of its first execution and
+// replaces it with the generic variant for good as soon as one of its type guards fails
+final class Specialization {
+    private Specialization() {}
+
+    //////////////////////////////////////////////////////////
+    //      Binary
+    //////////////////////////////////////////////////////////
+
+    abstract static class BinaryNode {
+        abstract Object execute(Expression.Binary site, Object left, Object right);
+
+        // the guard failed, so this site is not monomorphic: stop specializing it
+        final Object generalize(Expression.Binary site, Object left, Object right) {
+            site.node = GENERIC_BINARY;
+            return GENERIC_BINARY.execute(site, left, right);
+        }
+    }
+
+    static Object executeBinary(Expression.Binary site, Object left, Object right) {
+        BinaryNode node = site.node;
+        if (node == null) {
+            node = specialize(site.operator.tokenType, left, right);
+            site.node = node;
+        }
+        return node.execute(site, left, right);
+    }
+
+    private static BinaryNode specialize(TokenType operator, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            switch (operator) {
+                case PLUS: return new LongAdd();
+                case MINUS: return new LongSubtract();
+                case STAR: return new LongMultiply();
+                case SLASH: return new LongDivide();
+                case PERCENT: return new LongModulo();
+                case LESS: return new LongLess();
+                case LESS_EQUAL: return new LongLessEqual();
+                case GREATER: return new LongGreater();
+                case GREATER_EQUAL: return new LongGreaterEqual();
+                case EQUAL_EQUAL: return new LongEqual();
+                case BANG_EQUAL: return new LongNotEqual();
+            }
+        }
+        if (left instanceof Double && right instanceof Double) {
+            switch (operator) {
+                case PLUS: return new DoubleAdd();
+                case MINUS: return new DoubleSubtract();
+                case STAR: return new DoubleMultiply();
+                case SLASH: return new DoubleDivide();
+                case LESS: return new DoubleLess();
+                case LESS_EQUAL: return new DoubleLessEqual();
+                case GREATER: return new DoubleGreater();
+                case GREATER_EQUAL: return new DoubleGreaterEqual();
+            }
+        }
+        if (Rope.isString(left) && Rope.isString(right) && operator == TokenType.PLUS) {
+            return new StringConcat();
+        }
+        return GENERIC_BINARY;
+    }
+
+    private static final BinaryNode GENERIC_BINARY = new BinaryNode() {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            return Interpreter.binary(site.operator, left, right);
+        }
+    };
+
+    private static final class LongAdd extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long) return Arithmetic.box((long) left + (long) right);
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class LongSubtract extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long) return Arithmetic.box((long) left - (long) right);
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class LongMultiply extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long) return Arithmetic.box((long) left * (long) right);
+            return generalize(site, left, right);
+        }
+    }
+
+    // a zero divisor is left to the generic path, which reports the error
+    private static final class LongDivide extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long && (long) right != 0) {
+                return Arithmetic.box((long) left / (long) right);
+            }
+            return Interpreter.binary(site.operator, left, right);
+        }
+    }
+
+    private static final class LongModulo extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long && (long) right != 0) {
+                return Arithmetic.box((long) left % (long) right);
+            }
+            return Interpreter.binary(site.operator, left, right);
+        }
+    }
+
+    private static final class LongLess extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long) return (long) left < (long) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class LongLessEqual extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long) return (long) left <= (long) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class LongGreater extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long) return (long) left > (long) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class LongGreaterEqual extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long) return (long) left >= (long) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class LongEqual extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long) return (long) left == (long) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class LongNotEqual extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Long && right instanceof Long) return (long) left != (long) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class DoubleAdd extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return (double) left + (double) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class DoubleSubtract extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return (double) left - (double) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class DoubleMultiply extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return (double) left * (double) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class DoubleDivide extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double && (double) right != 0) {
+                return (double) left / (double) right;
+            }
+            return Interpreter.binary(site.operator, left, right);
+        }
+    }
+
+    private static final class DoubleLess extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return (double) left < (double) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class DoubleLessEqual extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return (double) left <= (double) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class DoubleGreater extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return (double) left > (double) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class DoubleGreaterEqual extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return (double) left >= (double) right;
+            return generalize(site, left, right);
+        }
+    }
+
+    private static final class StringConcat extends BinaryNode {
+        Object execute(Expression.Binary site, Object left, Object right) {
+            if (Rope.isString(left) && Rope.isString(right)) return Rope.concat((CharSequence) left, (CharSequence) right);
+            return generalize(site, left, right);
+        }
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Unary
+    //////////////////////////////////////////////////////////
+
+    abstract static class UnaryNode {
+        abstract Object execute(Expression.Unary site, Object operand);
+
+        final Object generalize(Expression.Unary site, Object operand) {
+            site.node = GENERIC_UNARY;
+            return GENERIC_UNARY.execute(site, operand);
+        }
+    }
+
+    static Object executeUnary(Expression.Unary site, Object operand) {
+        UnaryNode node = site.node;
+        if (node == null) {
+            node = specialize(site.operator.tokenType, operand);
+            site.node = node;
+        }
+        return node.execute(site, operand);
+    }
+
+    private static UnaryNode specialize(TokenType operator, Object operand) {
+        if (operator == TokenType.MINUS && operand instanceof Long) return new LongNegate();
+        if (operator == TokenType.MINUS && operand instanceof Double) return new DoubleNegate();
+        if (operator == TokenType.BANG && operand instanceof Boolean) return new BooleanNot();
+        return GENERIC_UNARY;
+    }
+
+    private static final UnaryNode GENERIC_UNARY = new UnaryNode() {
+        Object execute(Expression.Unary site, Object operand) {
+            return Interpreter.unary(site.operator, operand);
+        }
+    };
+
+    private static final class LongNegate extends UnaryNode {
+        Object execute(Expression.Unary site, Object operand) {
+            if (operand instanceof Long) return Arithmetic.box(-(long) operand);
+            return generalize(site, operand);
+        }
+    }
+
+    private static final class DoubleNegate extends UnaryNode {
+        Object execute(Expression.Unary site, Object operand) {
+            if (operand instanceof Double) return -(double) operand;
+            return generalize(site, operand);
+        }
+    }
+
+    private static final class BooleanNot extends UnaryNode {
+        Object execute(Expression.Unary site, Object operand) {
+            if (operand instanceof Boolean) return !(boolean) operand;
+            return generalize(site, operand);
+        }
+    }
+}
@@ -17,6 +17,13 @@ abstract class Statement {
         R visitInitializerStatement(Initializer statement);
         R visitForStatement(For statement);
         R visitWhileStatement(While statement);
+        R visitBreakStatement(Break statement);
+        R visitContinueStatement(Continue statement);
+        R visitGoStatement(Go statement);
+        R visitSendStatement(Send statement);
+        R visitSelectStatement(Select statement);
+        R visitLookupStatement(Lookup statement);
+        R visitRangeStatement(Range statement);
     }
 
     // each statement is a subclass of Statement class, all of them have an accept method,  they all have a final field for each of their parameters, and they inherit the Statement class
@@ -30,6 +37,14 @@ abstract class Statement {
         }
 
         final List<Statement> statements;
+        // number of locals declared directly in this block, filled in by the Resolver
+        // a block that declares nothing, like most loop bodies, has none and gets no scope at all: it runs in
+        // the enclosing environment and the Resolver does not count it in the depths of the variables inside
+        int slotCount;
+
+        boolean hasScope() {
+            return slotCount > 0;
+        }
     }
 
     static class Function extends Statement {
@@ -46,6 +61,13 @@ abstract class Statement {
         final Token name;
         final List<Token> parameters;
         final List<Statement> body;
+        // frame slot of the function name, -1 when it is a global, and the size of the frame for its parameters and body
+        int slot = -1;
+        int slotCount;
+        // the calls and loop iterations counted while the function is interpreted, and its body once the jit
+        // compiled it, see Jit
+        int heat;
+        volatile Jit.Code compiled;
     }
 
     static class ExpressionStmt extends Statement {
@@ -74,6 +96,8 @@ abstract class Statement {
         final Token name;
         final Expression superclass;
         final List<Statement.Function> methods;
+        // frame slot of the class name, -1 when it is a global
+        int slot = -1;
     }
 
     static class If extends Statement {
@@ -130,6 +154,8 @@ abstract class Statement {
 
         final Token name;
         final Expression initializer;
+        // frame slot of the variable, -1 when it is a global
+        int slot = -1;
     }
 
     static class Initializer extends Statement {
@@ -144,14 +170,18 @@ abstract class Statement {
 
         final Token name;
         final Expression initializer;
+        // frame slot of the variable, -1 when it is a global
+        int slot = -1;
     }
 
+    // label is the name a labelled break or continue refers to the loop by, null when the loop has none
     static class For extends Statement {
-        For(Statement initializer, Expression condition, Expression increment, Statement body) {
+        For(Statement initializer, Expression condition, Expression increment, Statement body, Token label) {
             this.initializer = initializer;
             this.condition = condition;
             this.increment = increment;
             this.body = body;
+            this.label = label;
         }
 
         <R> R accept(Visitor<R> visitor) {
@@ -162,12 +192,14 @@ abstract class Statement {
         final Expression condition;
         final Expression increment;
         final Statement body;
+        final Token label;
     }
 
     static class While extends Statement {
-        While(Expression condition, Statement body) {
+        While(Expression condition, Statement body, Token label) {
             this.condition = condition;
             this.body = body;
+            this.label = label;
         }
 
         <R> R accept(Visitor<R> visitor) {
@@ -176,6 +208,165 @@ abstract class Statement {
 
         final Expression condition;
         final Statement body;
+        final Token label;
+    }
+
+    // label names the loop to leave, null for the innermost loop or select
+    static class Break extends Statement {
+        Break(Token keyword, Token label) {
+            this.keyword = keyword;
+            this.label = label;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitBreakStatement(this);
+        }
+
+        final Token keyword;
+        final Token label;
+    }
+
+    // label names the loop to go on with, null for the innermost loop
+    static class Continue extends Statement {
+        Continue(Token keyword, Token label) {
+            this.keyword = keyword;
+            this.label = label;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitContinueStatement(this);
+        }
+
+        final Token keyword;
+        final Token label;
+    }
+
+
+    // go call, the callee and the arguments are evaluated by the goroutine that runs the statement
+    static class Go extends Statement {
+        Go(Token keyword, Expression.Call call) {
+            this.keyword = keyword;
+            this.call = call;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitGoStatement(this);
+        }
+
+        final Token keyword;
+        final Expression.Call call;
+    }
+
+    // channel <- value
+    static class Send extends Statement {
+        Send(Expression channel, Token arrow, Expression value) {
+            this.channel = channel;
+            this.arrow = arrow;
+            this.value = value;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSendStatement(this);
+        }
+
+        final Expression channel;
+        final Token arrow;
+        final Expression value;
+    }
+
+    static class Select extends Statement {
+        Select(Token keyword, List<Case> cases) {
+            this.keyword = keyword;
+            this.cases = cases;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSelectStatement(this);
+        }
+
+        final Token keyword;
+        final List<Case> cases;
+
+        // case channel <- value:, case <-channel:, case target = <-channel:, case target, ok := <-channel: or
+        // default: (channel is null)
+        // with := the targets are declared in a scope of the case's own, around its body, as for Range
+        static class Case {
+            Case(Token keyword, Expression channel, Expression value, Expression.Variable target,
+                 Expression.Variable ok, boolean declare, Block body) {
+                this.keyword = keyword;
+                this.channel = channel;
+                this.value = value;
+                this.target = target;
+                this.ok = ok;
+                this.declare = declare;
+                this.body = body;
+            }
+
+            final Token keyword;
+            final Expression channel;
+            // what a send case sends, null for receive and default cases
+            final Expression value;
+            // the variables a receive case assigns what it received and whether it was sent to, rather than
+            // the channel being closed, null when they are left out or _
+            final Expression.Variable target;
+            final Expression.Variable ok;
+            final boolean declare;
+            final Block body;
+            // number of locals of the scope := makes, filled in by the Resolver
+            int slotCount;
+        }
+    }
+
+    // value, ok := map[key] or value, ok := <-channel, or with = in place of :=, a target is null for _
+    // ok tells whether the key was in the map, or whether the value was sent rather than the channel closed
+    // with := the Resolver declares the targets that are not in the scope yet and resolves the others
+    static class Lookup extends Statement {
+        Lookup(Expression.Variable value, Expression.Variable ok, boolean declare, Expression source) {
+            this.value = value;
+            this.ok = ok;
+            this.declare = declare;
+            this.source = source;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitLookupStatement(this);
+        }
+
+        final Expression.Variable value;
+        final Expression.Variable ok;
+        final boolean declare;
+        // an Expression.Index or an Expression.Receive
+        final Expression source;
+    }
+
+    // for key, value := range object body, or with = to assign to variables declared before, a target is null
+    // when it is left out or is _
+    // with := each iteration has a scope of its own holding the two variables, around the body's block
+    static class Range extends Statement {
+        Range(Token keyword, Expression.Variable key, Expression.Variable value, boolean declare, Expression object, Statement body,
+              Token label) {
+            this.keyword = keyword;
+            this.key = key;
+            this.value = value;
+            this.declare = declare;
+            this.object = object;
+            this.body = body;
+            this.label = label;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitRangeStatement(this);
+        }
+
+        final Token keyword;
+        final Expression.Variable key;
+        final Expression.Variable value;
+        final boolean declare;
+        final Expression object;
+        final Statement body;
+        final Token label;
+        // number of locals of an iteration's scope, filled in by the Resolver
+        int slotCount;
     }
 
     abstract <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,68 @@
+package gointerpreter;
+
+// identifier names interned straight from the scanner's chars: every occurrence of a name gets the same
+// id and shares one String, so only the first occurrence allocates
+final class Symbols {
+    private String[] names = new String[64];
+    // open addressing on the name's hash, entries are id + 1 so that 0 marks a free slot
+    private int[] table = new int[128];
+    private int count = 0;
+
+    int intern(char[] chars, int from, int length) {
+        int hash = hash(chars, from, length);
+        int mask = table.length - 1;
+        int index = hash & mask;
+        while (table[index] != 0) {
+            int id = table[index] - 1;
+            if (matches(names[id], chars, from, length)) return id;
+            index = (index + 1) & mask;
+        }
+        if (count == names.length) {
+            String[] grown = new String[names.length * 2];
+            System.arraycopy(names, 0, grown, 0, count);
+            names = grown;
+        }
+        int id = count++;
+        names[id] = new String(chars, from, length);
+        table[index] = id + 1;
+        // keep the table at most half full
+        if (count * 2 > table.length) rehash();
+        return id;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int size() {
+        return count;
+    }
+
+    private void rehash() {
+        int[] grown = new int[table.length * 2];
+        int mask = grown.length - 1;
+        for (int id = 0; id < count; id++) {
+            int index = names[id].hashCode() & mask;
+            while (grown[index] != 0) index = (index + 1) & mask;
+            grown[index] = id + 1;
+        }
+        table = grown;
+    }
+
+    // the same hash as String.hashCode, so rehashing can use the names' cached hashes
+    private static int hash(char[] chars, int from, int length) {
+        int hash = 0;
+        for (int i = from; i < from + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    private static boolean matches(String name, char[] chars, int from, int length) {
+        if (name.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[from + i]) return false;
+        }
+        return true;
+    }
+}
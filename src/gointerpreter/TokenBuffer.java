@@ -0,0 +1,65 @@
+package gointerpreter;
+
+// tokens travelling from the scanner to the parser, kept in parallel arrays and addressed by token number
+// the buffer is a ring, so it only holds the parser's lookahead and the token before it
+// a Token object is only made for the tokens the parser keeps in the tree or reports an error at
+final class TokenBuffer {
+    static final int CAPACITY = 16;
+    private static final int MASK = CAPACITY - 1;
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final int[] types = new int[CAPACITY];
+    private final int[] lines = new int[CAPACITY];
+    private final int[] symbols = new int[CAPACITY];
+    // shared strings: interned names for identifiers and keywords, one copy per scanner for punctuation
+    private final String[] lexemes = new String[CAPACITY];
+    private final Object[] literals = new Object[CAPACITY];
+    private final Token[] materialized = new Token[CAPACITY];
+    private int count = 0;
+
+    // the number the next token added will get
+    int size() {
+        return count;
+    }
+
+    // symbol is the identifier's id in the scanner's Symbols, -1 for other tokens
+    // a string literal has no lexeme of its own, it is rebuilt from the literal if it is ever needed
+    void add(TokenType type, String lexeme, int symbol, Object literal, int line) {
+        int slot = count & MASK;
+        types[slot] = type.ordinal();
+        lexemes[slot] = lexeme;
+        symbols[slot] = symbol;
+        literals[slot] = literal;
+        lines[slot] = line;
+        materialized[slot] = null;
+        count++;
+    }
+
+    TokenType type(int index) {
+        return TYPES[types[index & MASK]];
+    }
+
+    int line(int index) {
+        return lines[index & MASK];
+    }
+
+    int symbol(int index) {
+        return symbols[index & MASK];
+    }
+
+    Object literal(int index) {
+        return literals[index & MASK];
+    }
+
+    Token token(int index) {
+        int slot = index & MASK;
+        Token token = materialized[slot];
+        if (token == null) {
+            String lexeme = lexemes[slot];
+            if (lexeme == null) lexeme = "\"" + literals[slot] + "\"";
+            token = new Token(TYPES[types[slot]], lexeme, literals[slot], lines[slot]);
+            materialized[slot] = token;
+        }
+        return token;
+    }
+}
@@ -0,0 +1,841 @@
+package gointerpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// the compact form ProgramCache keeps resolved programs in: each node is a tag byte followed by its children
+// and what the Resolver wrote on it, numbers are variable length, and every string and token is written once
+// and referred to by its index after that, so the names repeated all over a program cost a byte or two each
+// tokens that are alike are written once even when the tree has several of them, they are never changed
+// token lines are written as the difference to the line of the token written before, which is mostly 0 or 1
+// reading it back builds the nodes through their constructors, no reflection and no class names involved
+// a node that is in the tree twice is read back as two equal nodes, nothing relies on nodes being shared
+final class TreeEncoding {
+    private static final int MAGIC = 0x474f4154;
+
+    // expression tags, 0 is null
+    private static final int VARIABLE = 1, ASSIGN = 2, BINARY = 3, UNARY = 4, CALL = 5, GET = 6, GROUPING = 7,
+            LITERAL = 8, LOGICAL = 9, SET = 10, THIS = 11, SUPER = 12, RECEIVE = 13, MAKE = 14, INDEX = 15,
+            SET_INDEX = 16, SLICING = 17, SLICE_LITERAL = 18, MAP_LITERAL = 19;
+
+    // statement tags, 0 is null
+    private static final int BLOCK = 1, FUNCTION = 2, CLASS = 3, EXPRESSION = 4, IF = 5, PRINT = 6, RETURN = 7,
+            VAR = 8, INITIALIZER = 9, FOR = 10, WHILE = 11, BREAK = 12, CONTINUE = 13, GO = 14, SEND = 15,
+            SELECT = 16, LOOKUP = 17, RANGE = 18;
+
+    // literal value tags
+    private static final int NULL = 0, FALSE = 1, TRUE = 2, INT = 3, FLOAT = 4, STRING = 5, NIL_SLICE = 6,
+            NIL_MAP = 7;
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private TreeEncoding() {
+    }
+
+    // throws IllegalArgumentException for a literal value that has no encoding
+    static byte[] encode(List<Statement> statements) {
+        Writer writer = new Writer();
+        writer.writeFixed(MAGIC);
+        writer.writeStatements(statements);
+        return writer.bytes.toByteArray();
+    }
+
+    // throws IllegalArgumentException, or an IndexOutOfBoundsException or ClassCastException, for bytes that
+    // encode() did not make
+    static List<Statement> decode(byte[] bytes) {
+        Reader reader = new Reader(bytes);
+        if (reader.readFixed() != MAGIC) throw new IllegalArgumentException("Not an encoded program.");
+        List<Statement> statements = reader.readStatements();
+        if (reader.position != bytes.length) throw new IllegalArgumentException("Trailing bytes after the program.");
+        return statements;
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Writing
+    //////////////////////////////////////////////////////////
+
+    private static final class Writer implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 12);
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<TokenKey, Integer> tokens = new HashMap<>();
+        private int line = 0;
+
+        void writeFixed(int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) bytes.write(value >>> shift);
+        }
+
+        // seven bits at a time, the low ones first
+        void writeUnsigned(long value) {
+            while ((value & ~0x7fL) != 0) {
+                bytes.write((int) (value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes.write((int) value);
+        }
+
+        // zigzag, so small negative numbers like GLOBAL stay one byte
+        void writeSigned(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        // 1 and the string the first time, 1 plus its number in the order of first use after that, 0 for null
+        void writeString(String text) {
+            if (text == null) {
+                writeUnsigned(0);
+                return;
+            }
+            Integer index = strings.get(text);
+            if (index != null) {
+                writeUnsigned(index + 1);
+                return;
+            }
+            strings.put(text, strings.size() + 1);
+            writeUnsigned(1);
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(utf8.length);
+            bytes.write(utf8, 0, utf8.length);
+        }
+
+        // like strings, 0 is null
+        void writeToken(Token token) {
+            if (token == null) {
+                writeUnsigned(0);
+                return;
+            }
+            TokenKey key = new TokenKey(token);
+            Integer index = tokens.get(key);
+            if (index != null) {
+                writeUnsigned(index + 1);
+                return;
+            }
+            tokens.put(key, tokens.size() + 1);
+            writeUnsigned(1);
+            writeUnsigned(token.tokenType.ordinal());
+            writeString(token.lexeme);
+            writeValue(token.literal);
+            writeSigned(token.line - line);
+            line = token.line;
+        }
+
+        void writeTokens(List<Token> list) {
+            writeUnsigned(list.size());
+            for (Token token : list) writeToken(token);
+        }
+
+        void writeValue(Object value) {
+            if (value == null) {
+                writeUnsigned(NULL);
+            } else if (value instanceof Boolean) {
+                writeUnsigned((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Long) {
+                writeUnsigned(INT);
+                writeSigned((Long) value);
+            } else if (value instanceof Double) {
+                writeUnsigned(FLOAT);
+                long bits = Double.doubleToRawLongBits((Double) value);
+                writeFixed((int) (bits >>> 32));
+                writeFixed((int) bits);
+            } else if (value instanceof String) {
+                writeUnsigned(STRING);
+                writeString((String) value);
+            } else if (value instanceof Slice && ((Slice) value).isNil()) {
+                writeUnsigned(NIL_SLICE);
+                writeUnsigned(((Slice) value).kind);
+            } else if (value instanceof GoMap && ((GoMap) value).isNil()) {
+                GoMap map = (GoMap) value;
+                writeUnsigned(NIL_MAP);
+                writeUnsigned(map.keyKind);
+                writeUnsigned(map.valueKind);
+                writeValue(map.zero);
+            } else {
+                throw new IllegalArgumentException("Cannot encode a " + value.getClass().getSimpleName() + " literal.");
+            }
+        }
+
+        void writeExpression(Expression expression) {
+            if (expression == null) {
+                writeUnsigned(0);
+            } else {
+                expression.accept(this);
+            }
+        }
+
+        void writeExpressions(List<Expression> list) {
+            writeUnsigned(list.size());
+            for (Expression expression : list) writeExpression(expression);
+        }
+
+        void writeStatement(Statement statement) {
+            if (statement == null) {
+                writeUnsigned(0);
+            } else {
+                statement.accept(this);
+            }
+        }
+
+        void writeStatements(List<? extends Statement> list) {
+            writeUnsigned(list.size());
+            for (Statement statement : list) writeStatement(statement);
+        }
+
+        private void resolved(Expression.Resolvable expression) {
+            writeSigned(expression.depth);
+            writeSigned(expression.slot);
+        }
+
+        public Void visitVariableExpression(Expression.Variable expression) {
+            writeUnsigned(VARIABLE);
+            writeToken(expression.name);
+            resolved(expression);
+            return null;
+        }
+
+        public Void visitAssignExpression(Expression.Assign expression) {
+            writeUnsigned(ASSIGN);
+            writeToken(expression.name);
+            writeExpression(expression.value);
+            resolved(expression);
+            return null;
+        }
+
+        public Void visitBinaryExpression(Expression.Binary expression) {
+            writeUnsigned(BINARY);
+            writeExpression(expression.left);
+            writeToken(expression.operator);
+            writeExpression(expression.right);
+            return null;
+        }
+
+        public Void visitUnaryExpression(Expression.Unary expression) {
+            writeUnsigned(UNARY);
+            writeToken(expression.operator);
+            writeExpression(expression.right);
+            return null;
+        }
+
+        public Void visitCallExpression(Expression.Call expression) {
+            writeUnsigned(CALL);
+            writeExpression(expression.call);
+            writeToken(expression.name);
+            writeExpressions(expression.arguments);
+            return null;
+        }
+
+        public Void visitGetExpression(Expression.Get expression) {
+            writeUnsigned(GET);
+            writeExpression(expression.object);
+            writeToken(expression.name);
+            return null;
+        }
+
+        public Void visitGroupingExpression(Expression.Grouping expression) {
+            writeUnsigned(GROUPING);
+            writeExpression(expression.expression);
+            return null;
+        }
+
+        public Void visitLiteralExpression(Expression.Literal expression) {
+            writeUnsigned(LITERAL);
+            writeValue(expression.literal);
+            return null;
+        }
+
+        public Void visitLogicalExpression(Expression.Logical expression) {
+            writeUnsigned(LOGICAL);
+            writeExpression(expression.left);
+            writeToken(expression.operator);
+            writeExpression(expression.right);
+            return null;
+        }
+
+        public Void visitSetExpression(Expression.Set expression) {
+            writeUnsigned(SET);
+            writeExpression(expression.object);
+            writeToken(expression.name);
+            writeExpression(expression.value);
+            return null;
+        }
+
+        public Void visitThisExpression(Expression.This expression) {
+            writeUnsigned(THIS);
+            writeToken(expression.keyword);
+            resolved(expression);
+            return null;
+        }
+
+        public Void visitSuperExpression(Expression.Super expression) {
+            writeUnsigned(SUPER);
+            writeToken(expression.keyword);
+            writeToken(expression.method);
+            resolved(expression);
+            writeSigned(expression.thisDepth);
+            return null;
+        }
+
+        public Void visitReceiveExpression(Expression.Receive expression) {
+            writeUnsigned(RECEIVE);
+            writeToken(expression.arrow);
+            writeExpression(expression.channel);
+            return null;
+        }
+
+        public Void visitMakeExpression(Expression.Make expression) {
+            writeUnsigned(MAKE);
+            writeToken(expression.keyword);
+            writeSigned(expression.kind == null ? -1 : expression.kind.ordinal());
+            writeSigned(expression.element);
+            writeExpressions(expression.arguments);
+            return null;
+        }
+
+        public Void visitIndexExpression(Expression.Index expression) {
+            writeUnsigned(INDEX);
+            writeExpression(expression.object);
+            writeToken(expression.bracket);
+            writeExpression(expression.index);
+            return null;
+        }
+
+        public Void visitSetIndexExpression(Expression.SetIndex expression) {
+            writeUnsigned(SET_INDEX);
+            writeExpression(expression.object);
+            writeToken(expression.bracket);
+            writeExpression(expression.index);
+            writeExpression(expression.value);
+            return null;
+        }
+
+        public Void visitSlicingExpression(Expression.Slicing expression) {
+            writeUnsigned(SLICING);
+            writeExpression(expression.object);
+            writeToken(expression.bracket);
+            writeExpression(expression.low);
+            writeExpression(expression.high);
+            return null;
+        }
+
+        public Void visitSliceLiteralExpression(Expression.SliceLiteral expression) {
+            writeUnsigned(SLICE_LITERAL);
+            writeToken(expression.bracket);
+            writeSigned(expression.kind);
+            writeSigned(expression.length);
+            writeExpressions(expression.elements);
+            return null;
+        }
+
+        public Void visitMapLiteralExpression(Expression.MapLiteral expression) {
+            writeUnsigned(MAP_LITERAL);
+            writeToken(expression.keyword);
+            writeValue(expression.type);
+            writeExpression(expression.size);
+            writeExpressions(expression.keys);
+            writeExpressions(expression.values);
+            return null;
+        }
+
+        public Void visitBlockStatement(Statement.Block statement) {
+            writeUnsigned(BLOCK);
+            writeStatements(statement.statements);
+            writeSigned(statement.slotCount);
+            return null;
+        }
+
+        public Void visitFunctionStatement(Statement.Function statement) {
+            writeUnsigned(FUNCTION);
+            writeToken(statement.name);
+            writeTokens(statement.parameters);
+            writeStatements(statement.body);
+            writeSigned(statement.slot);
+            writeSigned(statement.slotCount);
+            return null;
+        }
+
+        public Void visitClassStatement(Statement.Class statement) {
+            writeUnsigned(CLASS);
+            writeToken(statement.name);
+            writeExpression(statement.superclass);
+            writeStatements(statement.methods);
+            writeSigned(statement.slot);
+            return null;
+        }
+
+        public Void visitExpressionStatement(Statement.ExpressionStmt statement) {
+            writeUnsigned(EXPRESSION);
+            writeExpression(statement.expression);
+            return null;
+        }
+
+        public Void visitIfStatement(Statement.If statement) {
+            writeUnsigned(IF);
+            writeExpression(statement.condition);
+            writeStatement(statement.thenBranch);
+            writeStatement(statement.elseBranch);
+            return null;
+        }
+
+        public Void visitPrintStatement(Statement.Print statement) {
+            writeUnsigned(PRINT);
+            writeExpression(statement.expression);
+            return null;
+        }
+
+        public Void visitReturnStatement(Statement.Return statement) {
+            writeUnsigned(RETURN);
+            writeToken(statement.keyword);
+            writeExpression(statement.value);
+            return null;
+        }
+
+        public Void visitVarStatement(Statement.Var statement) {
+            writeUnsigned(VAR);
+            writeToken(statement.name);
+            writeExpression(statement.initializer);
+            writeSigned(statement.slot);
+            return null;
+        }
+
+        public Void visitInitializerStatement(Statement.Initializer statement) {
+            writeUnsigned(INITIALIZER);
+            writeToken(statement.name);
+            writeExpression(statement.initializer);
+            writeSigned(statement.slot);
+            return null;
+        }
+
+        public Void visitForStatement(Statement.For statement) {
+            writeUnsigned(FOR);
+            writeStatement(statement.initializer);
+            writeExpression(statement.condition);
+            writeExpression(statement.increment);
+            writeStatement(statement.body);
+            writeToken(statement.label);
+            return null;
+        }
+
+        public Void visitWhileStatement(Statement.While statement) {
+            writeUnsigned(WHILE);
+            writeExpression(statement.condition);
+            writeStatement(statement.body);
+            writeToken(statement.label);
+            return null;
+        }
+
+        public Void visitBreakStatement(Statement.Break statement) {
+            writeUnsigned(BREAK);
+            writeToken(statement.keyword);
+            writeToken(statement.label);
+            return null;
+        }
+
+        public Void visitContinueStatement(Statement.Continue statement) {
+            writeUnsigned(CONTINUE);
+            writeToken(statement.keyword);
+            writeToken(statement.label);
+            return null;
+        }
+
+        public Void visitGoStatement(Statement.Go statement) {
+            writeUnsigned(GO);
+            writeToken(statement.keyword);
+            writeExpression(statement.call);
+            return null;
+        }
+
+        public Void visitSendStatement(Statement.Send statement) {
+            writeUnsigned(SEND);
+            writeExpression(statement.channel);
+            writeToken(statement.arrow);
+            writeExpression(statement.value);
+            return null;
+        }
+
+        public Void visitSelectStatement(Statement.Select statement) {
+            writeUnsigned(SELECT);
+            writeToken(statement.keyword);
+            writeUnsigned(statement.cases.size());
+            for (Statement.Select.Case selectCase : statement.cases) {
+                writeToken(selectCase.keyword);
+                writeExpression(selectCase.channel);
+                writeExpression(selectCase.value);
+                writeExpression(selectCase.target);
+                writeExpression(selectCase.ok);
+                writeUnsigned(selectCase.declare ? 1 : 0);
+                writeStatement(selectCase.body);
+                writeSigned(selectCase.slotCount);
+            }
+            return null;
+        }
+
+        public Void visitLookupStatement(Statement.Lookup statement) {
+            writeUnsigned(LOOKUP);
+            writeExpression(statement.value);
+            writeExpression(statement.ok);
+            writeUnsigned(statement.declare ? 1 : 0);
+            writeExpression(statement.source);
+            return null;
+        }
+
+        public Void visitRangeStatement(Statement.Range statement) {
+            writeUnsigned(RANGE);
+            writeToken(statement.keyword);
+            writeExpression(statement.key);
+            writeExpression(statement.value);
+            writeUnsigned(statement.declare ? 1 : 0);
+            writeExpression(statement.object);
+            writeStatement(statement.body);
+            writeToken(statement.label);
+            writeSigned(statement.slotCount);
+            return null;
+        }
+    }
+
+    // what makes two tokens alike
+    private static final class TokenKey {
+        private final Token token;
+
+        TokenKey(Token token) {
+            this.token = token;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof TokenKey)) return false;
+            Token that = ((TokenKey) other).token;
+            return token.tokenType == that.tokenType && token.line == that.line
+                    && Objects.equals(token.lexeme, that.lexeme) && Objects.equals(token.literal, that.literal);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Objects.hashCode(token.lexeme) * 31 + token.tokenType.ordinal()) * 31 + token.line;
+        }
+    }
+
+    //////////////////////////////////////////////////////////
+    //      Reading
+    //////////////////////////////////////////////////////////
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position = 0;
+        private final List<String> strings = new ArrayList<>();
+        private final List<Token> tokens = new ArrayList<>();
+        private int line = 0;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readFixed() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) value = (value << 8) | (bytes[position++] & 0xff);
+            return value;
+        }
+
+        long readUnsigned() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IllegalArgumentException("Malformed number.");
+        }
+
+        int readInt() {
+            long value = readUnsigned();
+            if (value > Integer.MAX_VALUE) throw new IllegalArgumentException("Malformed number.");
+            return (int) value;
+        }
+
+        long readSigned() {
+            long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            int index = readInt();
+            if (index == 0) return null;
+            if (index > 1) return strings.get(index - 2);
+            int length = readInt();
+            String text = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            strings.add(text);
+            return text;
+        }
+
+        Token readToken() {
+            int index = readInt();
+            if (index == 0) return null;
+            if (index > 1) return tokens.get(index - 2);
+            TokenType type = TYPES[readInt()];
+            String lexeme = readString();
+            Object literal = readValue();
+            line += (int) readSigned();
+            Token token = new Token(type, lexeme, literal, line);
+            tokens.add(token);
+            return token;
+        }
+
+        List<Token> readTokens() {
+            int count = readInt();
+            List<Token> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) list.add(readToken());
+            return list;
+        }
+
+        Object readValue() {
+            switch (readInt()) {
+                case NULL: return null;
+                case FALSE: return false;
+                case TRUE: return true;
+                case INT: return Arithmetic.box(readSigned());
+                case FLOAT: {
+                    long high = readFixed();
+                    return Double.longBitsToDouble((high << 32) | (readFixed() & 0xffffffffL));
+                }
+                case STRING: return readString();
+                case NIL_SLICE: return Slice.nil(readInt());
+                case NIL_MAP: {
+                    int keyKind = readInt();
+                    int valueKind = readInt();
+                    return GoMap.nil(keyKind, valueKind, readValue());
+                }
+                default: throw new IllegalArgumentException("Unknown value tag.");
+            }
+        }
+
+        private <T extends Expression.Resolvable> T resolved(T expression) {
+            expression.depth = (int) readSigned();
+            expression.slot = (int) readSigned();
+            return expression;
+        }
+
+        Expression readExpression() {
+            switch (readInt()) {
+                case 0: return null;
+                case VARIABLE: return resolved(new Expression.Variable(readToken()));
+                case ASSIGN: {
+                    Token name = readToken();
+                    return resolved(new Expression.Assign(name, readExpression()));
+                }
+                case BINARY: {
+                    Expression left = readExpression();
+                    Token operator = readToken();
+                    return new Expression.Binary(left, operator, readExpression());
+                }
+                case UNARY: {
+                    Token operator = readToken();
+                    return new Expression.Unary(operator, readExpression());
+                }
+                case CALL: {
+                    Expression callee = readExpression();
+                    Token name = readToken();
+                    return new Expression.Call(callee, name, readExpressions());
+                }
+                case GET: {
+                    Expression object = readExpression();
+                    return new Expression.Get(object, readToken());
+                }
+                case GROUPING: return new Expression.Grouping(readExpression());
+                case LITERAL: return new Expression.Literal(readValue());
+                case LOGICAL: {
+                    Expression left = readExpression();
+                    Token operator = readToken();
+                    return new Expression.Logical(left, operator, readExpression());
+                }
+                case SET: {
+                    Expression object = readExpression();
+                    Token name = readToken();
+                    return new Expression.Set(object, name, readExpression());
+                }
+                case THIS: return resolved(new Expression.This(readToken()));
+                case SUPER: {
+                    Token keyword = readToken();
+                    Expression.Super expression = resolved(new Expression.Super(keyword, readToken()));
+                    expression.thisDepth = (int) readSigned();
+                    return expression;
+                }
+                case RECEIVE: {
+                    Token arrow = readToken();
+                    return new Expression.Receive(arrow, readExpression());
+                }
+                case MAKE: {
+                    Token keyword = readToken();
+                    int kind = (int) readSigned();
+                    int element = (int) readSigned();
+                    return new Expression.Make(keyword, kind < 0 ? null : TYPES[kind], element, readExpressions());
+                }
+                case INDEX: {
+                    Expression object = readExpression();
+                    Token bracket = readToken();
+                    return new Expression.Index(object, bracket, readExpression());
+                }
+                case SET_INDEX: {
+                    Expression object = readExpression();
+                    Token bracket = readToken();
+                    Expression index = readExpression();
+                    return new Expression.SetIndex(object, bracket, index, readExpression());
+                }
+                case SLICING: {
+                    Expression object = readExpression();
+                    Token bracket = readToken();
+                    Expression low = readExpression();
+                    return new Expression.Slicing(object, bracket, low, readExpression());
+                }
+                case SLICE_LITERAL: {
+                    Token bracket = readToken();
+                    int kind = (int) readSigned();
+                    long length = readSigned();
+                    return new Expression.SliceLiteral(bracket, kind, length, readExpressions());
+                }
+                case MAP_LITERAL: {
+                    Token keyword = readToken();
+                    GoMap type = (GoMap) readValue();
+                    Expression size = readExpression();
+                    List<Expression> keys = readExpressions();
+                    return new Expression.MapLiteral(keyword, type, size, keys, readExpressions());
+                }
+                default: throw new IllegalArgumentException("Unknown expression tag.");
+            }
+        }
+
+        List<Expression> readExpressions() {
+            int count = readInt();
+            List<Expression> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) list.add(readExpression());
+            return list;
+        }
+
+        Statement readStatement() {
+            switch (readInt()) {
+                case 0: return null;
+                case BLOCK: {
+                    Statement.Block block = new Statement.Block(readStatements());
+                    block.slotCount = (int) readSigned();
+                    return block;
+                }
+                case FUNCTION: return readFunction();
+                case CLASS: {
+                    Token name = readToken();
+                    Expression superclass = readExpression();
+                    int count = readInt();
+                    List<Statement.Function> methods = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) methods.add((Statement.Function) readStatement());
+                    Statement.Class statement = new Statement.Class(name, superclass, methods);
+                    statement.slot = (int) readSigned();
+                    return statement;
+                }
+                case EXPRESSION: return new Statement.ExpressionStmt(readExpression());
+                case IF: {
+                    Expression condition = readExpression();
+                    Statement thenBranch = readStatement();
+                    return new Statement.If(condition, thenBranch, readStatement());
+                }
+                case PRINT: return new Statement.Print(readExpression());
+                case RETURN: {
+                    Token keyword = readToken();
+                    return new Statement.Return(keyword, readExpression());
+                }
+                case VAR: {
+                    Token name = readToken();
+                    Statement.Var statement = new Statement.Var(name, readExpression());
+                    statement.slot = (int) readSigned();
+                    return statement;
+                }
+                case INITIALIZER: {
+                    Token name = readToken();
+                    Statement.Initializer statement = new Statement.Initializer(name, readExpression());
+                    statement.slot = (int) readSigned();
+                    return statement;
+                }
+                case FOR: {
+                    Statement initializer = readStatement();
+                    Expression condition = readExpression();
+                    Expression increment = readExpression();
+                    Statement body = readStatement();
+                    return new Statement.For(initializer, condition, increment, body, readToken());
+                }
+                case WHILE: {
+                    Expression condition = readExpression();
+                    Statement body = readStatement();
+                    return new Statement.While(condition, body, readToken());
+                }
+                case BREAK: {
+                    Token keyword = readToken();
+                    return new Statement.Break(keyword, readToken());
+                }
+                case CONTINUE: {
+                    Token keyword = readToken();
+                    return new Statement.Continue(keyword, readToken());
+                }
+                case GO: {
+                    Token keyword = readToken();
+                    return new Statement.Go(keyword, (Expression.Call) readExpression());
+                }
+                case SEND: {
+                    Expression channel = readExpression();
+                    Token arrow = readToken();
+                    return new Statement.Send(channel, arrow, readExpression());
+                }
+                case SELECT: {
+                    Token keyword = readToken();
+                    int count = readInt();
+                    List<Statement.Select.Case> cases = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        Token caseKeyword = readToken();
+                        Expression channel = readExpression();
+                        Expression value = readExpression();
+                        Expression.Variable target = (Expression.Variable) readExpression();
+                        Expression.Variable ok = (Expression.Variable) readExpression();
+                        boolean declare = readInt() != 0;
+                        Statement.Select.Case selectCase = new Statement.Select.Case(caseKeyword, channel, value,
+                                target, ok, declare, (Statement.Block) readStatement());
+                        selectCase.slotCount = (int) readSigned();
+                        cases.add(selectCase);
+                    }
+                    return new Statement.Select(keyword, cases);
+                }
+                case LOOKUP: {
+                    Expression.Variable value = (Expression.Variable) readExpression();
+                    Expression.Variable ok = (Expression.Variable) readExpression();
+                    boolean declare = readInt() != 0;
+                    return new Statement.Lookup(value, ok, declare, readExpression());
+                }
+                case RANGE: {
+                    Token keyword = readToken();
+                    Expression.Variable key = (Expression.Variable) readExpression();
+                    Expression.Variable value = (Expression.Variable) readExpression();
+                    boolean declare = readInt() != 0;
+                    Expression object = readExpression();
+                    Statement body = readStatement();
+                    Statement.Range statement = new Statement.Range(keyword, key, value, declare, object, body, readToken());
+                    statement.slotCount = (int) readSigned();
+                    return statement;
+                }
+                default: throw new IllegalArgumentException("Unknown statement tag.");
+            }
+        }
+
+        private Statement.Function readFunction() {
+            Token name = readToken();
+            List<Token> parameters = readTokens();
+            Statement.Function function = new Statement.Function(name, parameters, readStatements());
+            function.slot = (int) readSigned();
+            function.slotCount = (int) readSigned();
+            return function;
+        }
+
+        List<Statement> readStatements() {
+            int count = readInt();
+            List<Statement> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) list.add(readStatement());
+            return list;
+        }
+    }
+}
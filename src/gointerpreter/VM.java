@@ -0,0 +1,606 @@
+package gointerpreter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// stack based virtual machine for the chunks produced by Compiler
+// scopes still live in Environment objects so the depths computed by the Resolver stay valid
+// calls push a Frame on a stack of its own instead of recursing in Java, so deep recursion is bounded by the
+// --stack budget and not by the thread's stack, and return f(...) reuses the frame of the function returning
+// each goroutine runs on a VM of its own, which shares the globals with the others but has its own stack
+class VM {
+    // what a frame takes on the heap, about: the Frame, its Environment and a few operand stack slots
+    private static final int FRAME_BYTES = 128;
+
+    // a function call in progress, frames are reused from one call to the next
+    private static final class Frame {
+        Chunk chunk;
+        int ip;
+        Environment environment;
+        // the stack index of the first argument, the callee is just below it and is replaced by the result
+        int base;
+        // the instance made by a class call, which its initializer returns whatever it returns
+        Instance instance;
+    }
+
+    final Environment globals;
+    private Object[] stack = new Object[256];
+    private int sp = 0;
+    private Frame[] frames = new Frame[64];
+    private int frameCount = 0;
+    // the --stack budget in frames, past it a call fails with a stack overflow
+    private final int maxFrames;
+    private final Output out;
+    private final ErrorReporter reporter;
+    private final Goroutines goroutines;
+
+    VM(ErrorReporter reporter, long stackSize) {
+        this.maxFrames = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(frames.length, stackSize / FRAME_BYTES));
+        this.out = reporter.out;
+        this.reporter = reporter;
+        this.globals = new Environment();
+        this.goroutines = new Goroutines();
+        Builtin.define(globals);
+    }
+
+    private VM(VM parent) {
+        this.maxFrames = parent.maxFrames;
+        this.out = parent.out;
+        this.reporter = parent.reporter;
+        this.globals = parent.globals;
+        this.goroutines = parent.goroutines;
+    }
+
+    void interpret(Chunk script) {
+        sp = 0;
+        frameCount = 0;
+        try {
+            pushFrame(script, globals, 0, null, 0);
+            run(0);
+        } catch (RuntimeError error) {
+            reporter.runtimeError(error);
+        } finally {
+            out.flush();
+        }
+    }
+
+    // the body of a goroutine, call holds the callee and its arguments, runtime errors end only this goroutine
+    private void start(Object[] call, int line) {
+        try {
+            for (Object value : call) {
+                push(value);
+            }
+            if (callValue(call[0], call.length - 1, line)) run(0);
+        } catch (RuntimeError error) {
+            reporter.runtimeError(error);
+        }
+    }
+
+    // a StackOverflowError out of the vm's own Java code, script recursion is bounded by the frame limit
+    // instead, reported at the line the innermost frame last left off
+    RuntimeError stackOverflow() {
+        int line = 0;
+        if (frameCount > 0) {
+            Frame frame = frames[frameCount - 1];
+            line = frame.chunk.lines[Math.max(frame.ip - 1, 0)];
+        }
+        return new RuntimeError(line, "Stack overflow.");
+    }
+
+    private void pushFrame(Closure closure, Instance receiver, int argCount, Instance instance, int line) {
+        int base = sp - argCount;
+        pushFrame(closure.chunk, arguments(closure, receiver, argCount), base, instance, line);
+    }
+
+    // the environment of a call to closure, the arguments are the top argCount values of the stack, they are
+    // popped and moved into it after the receiver, which methods keep in slot 0
+    private Environment arguments(Closure closure, Instance receiver, int argCount) {
+        Environment environment = new Environment(closure.closure, closure.declaration.slotCount);
+        int first = 0;
+        if (receiver != null) {
+            environment.slots[0] = receiver;
+            first = 1;
+        }
+        sp -= argCount;
+        System.arraycopy(stack, sp, environment.slots, first, argCount);
+        return environment;
+    }
+
+    private void pushFrame(Chunk chunk, Environment environment, int base, Instance instance, int line) {
+        if (frameCount == frames.length) {
+            if (frameCount >= maxFrames) throw new RuntimeError(line, "Stack overflow.");
+            frames = Arrays.copyOf(frames, (int) Math.min(maxFrames, frameCount * 2L));
+        }
+        Frame frame = frames[frameCount];
+        if (frame == null) {
+            frame = new Frame();
+            frames[frameCount] = frame;
+        }
+        frameCount++;
+        frame.chunk = chunk;
+        frame.ip = 0;
+        frame.environment = environment;
+        frame.base = base;
+        frame.instance = instance;
+    }
+
+    // runs the frames above depth, a call pushes a frame and carries on with the callee instead of running it
+    // in a nested run(), so script recursion takes heap, not Java stack
+    private Object run(int depth) {
+        frames:
+        for (;;) {
+            Frame frame = frames[frameCount - 1];
+            final Chunk chunk = frame.chunk;
+            final byte[] code = chunk.code;
+            final Object[] constants = chunk.constants;
+            Environment environment = frame.environment;
+            int ip = frame.ip;
+            for (;;) {
+                int at = ip;
+                switch (code[ip++]) {
+                    case OpCode.CONSTANT:
+                        push(constants[readShort(code, ip)]);
+                        ip += 2;
+                        break;
+                    case OpCode.NIL: push(null); break;
+                    case OpCode.TRUE: push(true); break;
+                    case OpCode.FALSE: push(false); break;
+                    case OpCode.POP: sp--; break;
+
+                    case OpCode.GET_LOCAL: {
+                        int distance = readShort(code, ip);
+                        int slot = readShort(code, ip + 2);
+                        ip += 4;
+                        push(environment.getAt(distance, slot));
+                        break;
+                    }
+                    case OpCode.SET_LOCAL: {
+                        int distance = readShort(code, ip);
+                        int slot = readShort(code, ip + 2);
+                        ip += 4;
+                        environment.assignAt(distance, slot, stack[sp - 1]);
+                        break;
+                    }
+                    case OpCode.GET_GLOBAL: {
+                        String name = (String) constants[readShort(code, ip)];
+                        ip += 2;
+                        push(globals.get(name, chunk.lines[at]));
+                        break;
+                    }
+                    case OpCode.SET_GLOBAL: {
+                        String name = (String) constants[readShort(code, ip)];
+                        ip += 2;
+                        globals.assign(name, chunk.lines[at], stack[sp - 1]);
+                        break;
+                    }
+                    case OpCode.DEFINE_GLOBAL: {
+                        String name = (String) constants[readShort(code, ip)];
+                        ip += 2;
+                        environment.define(name, stack[--sp]);
+                        break;
+                    }
+                    case OpCode.DEFINE_LOCAL:
+                        environment.slots[readShort(code, ip)] = stack[--sp];
+                        ip += 2;
+                        break;
+                    case OpCode.GET_PROPERTY: {
+                        String name = (String) constants[readShort(code, ip)];
+                        ip += 2;
+                        Object object = stack[sp - 1];
+                        if (!(object instanceof Instance)) {
+                            throw new RuntimeError(chunk.lines[at], "Only instances have properties.");
+                        }
+                        stack[sp - 1] = ((Instance) object).get(name, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.SET_PROPERTY: {
+                        String name = (String) constants[readShort(code, ip)];
+                        ip += 2;
+                        Object object = stack[sp - 2];
+                        if (!(object instanceof Instance)) {
+                            throw new RuntimeError(chunk.lines[at], "Only instances have fields.");
+                        }
+                        Object value = stack[--sp];
+                        ((Instance) object).set(name, value);
+                        stack[sp - 1] = value;
+                        break;
+                    }
+                    case OpCode.GET_SUPER: {
+                        int distance = readShort(code, ip);
+                        int thisDistance = readShort(code, ip + 2);
+                        String name = (String) constants[readShort(code, ip + 4)];
+                        ip += 6;
+                        Class superclass = (Class) environment.getAt(distance, 0);
+                        Instance object = (Instance) environment.getAt(thisDistance, 0);
+                        Function method = superclass.findMethod(object, name);
+                        if (method == null) {
+                            throw new RuntimeError(chunk.lines[at], "Undefined property '" + name + "'.");
+                        }
+                        push(method);
+                        break;
+                    }
+
+                    case OpCode.EQUAL: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = Interpreter.isEqual(stack[sp - 1], right);
+                        break;
+                    }
+                    case OpCode.NOT_EQUAL: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = !Interpreter.isEqual(stack[sp - 1], right);
+                        break;
+                    }
+                    case OpCode.GREATER: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = Arithmetic.greater(stack[sp - 1], right, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.GREATER_EQUAL: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = Arithmetic.greaterEqual(stack[sp - 1], right, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.LESS: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = Arithmetic.less(stack[sp - 1], right, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.LESS_EQUAL: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = Arithmetic.lessEqual(stack[sp - 1], right, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.ADD: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = Arithmetic.add(stack[sp - 1], right, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.SUBTRACT: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = Arithmetic.subtract(stack[sp - 1], right, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.MULTIPLY: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = Arithmetic.multiply(stack[sp - 1], right, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.DIVIDE: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = Arithmetic.divide(stack[sp - 1], right, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.MODULO: {
+                        Object right = stack[--sp];
+                        stack[sp - 1] = Arithmetic.modulo(stack[sp - 1], right, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.NOT:
+                        stack[sp - 1] = !Interpreter.isTruth(stack[sp - 1]);
+                        break;
+                    case OpCode.NEGATE:
+                        stack[sp - 1] = Arithmetic.negate(stack[sp - 1], chunk.lines[at]);
+                        break;
+
+                    case OpCode.PRINT:
+                        out.println(stack[--sp]);
+                        break;
+                    case OpCode.JUMP:
+                        ip += 2 + readShort(code, ip);
+                        break;
+                    case OpCode.JUMP_IF_FALSE:
+                        if (!Interpreter.isTruth(stack[sp - 1])) {
+                            ip += 2 + readShort(code, ip);
+                        } else {
+                            ip += 2;
+                        }
+                        break;
+                    case OpCode.LOOP:
+                        ip -= readShort(code, ip) - 2;
+                        break;
+                    case OpCode.CALL: {
+                        int argCount = code[ip++] & 0xff;
+                        frame.ip = ip;
+                        frame.environment = environment;
+                        if (callValue(stack[sp - argCount - 1], argCount, chunk.lines[at])) continue frames;
+                        break;
+                    }
+                    case OpCode.TAIL_CALL: {
+                        int argCount = code[ip++] & 0xff;
+                        Object callee = stack[sp - argCount - 1];
+                        if (callee instanceof Closure) {
+                            // the callee takes this frame over, so it returns straight to this function's caller
+                            Closure closure = (Closure) callee;
+                            checkArity(closure.arity(), argCount, chunk.lines[at]);
+                            frame.environment = arguments(closure, closure.receiver, argCount);
+                            frame.chunk = closure.chunk;
+                            frame.ip = 0;
+                            sp = frame.base;
+                            continue frames;
+                        }
+                        // anything else is called as usual and the RETURN after this instruction returns its result
+                        frame.ip = ip;
+                        frame.environment = environment;
+                        if (callValue(callee, argCount, chunk.lines[at])) continue frames;
+                        break;
+                    }
+                    case OpCode.INVOKE: {
+                        String name = (String) constants[readShort(code, ip)];
+                        int argCount = code[ip + 2] & 0xff;
+                        ip += 3;
+                        Object receiver = stack[sp - argCount - 1];
+                        if (!(receiver instanceof Instance)) {
+                            throw new RuntimeError(chunk.lines[at], "Only instances have properties.");
+                        }
+                        frame.ip = ip;
+                        frame.environment = environment;
+                        if (invokeMethod((Instance) receiver, name, argCount, chunk.lines[at])) continue frames;
+                        break;
+                    }
+                    case OpCode.GO: {
+                        int argCount = code[ip++] & 0xff;
+                        int line = chunk.lines[at];
+                        Object callee = stack[sp - argCount - 1];
+                        if (!(callee instanceof Callable)) {
+                            throw new RuntimeError(line, "Can only call functions and classes.");
+                        }
+                        checkArity(((Callable) callee).arity(), argCount, line);
+                        Object[] call = Arrays.copyOfRange(stack, sp - argCount - 1, sp);
+                        sp -= argCount + 1;
+                        VM goroutine = new VM(this);
+                        goroutines.go(() -> goroutine.start(call, line), line);
+                        break;
+                    }
+                    case OpCode.SEND: {
+                        Object value = stack[--sp];
+                        Object channel = stack[--sp];
+                        if (channel == null) Channel.block(goroutines, chunk.lines[at]);
+                        channel(channel, chunk.lines[at]).send(value, goroutines, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.RECEIVE: {
+                        Object channel = stack[sp - 1];
+                        if (channel == null) Channel.block(goroutines, chunk.lines[at]);
+                        stack[sp - 1] = channel(channel, chunk.lines[at]).receive(goroutines, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.RECEIVE_OK: {
+                        Object channel = stack[sp - 1];
+                        if (channel == null) Channel.block(goroutines, chunk.lines[at]);
+                        Channel source = channel(channel, chunk.lines[at]);
+                        Object received = source.receiveOrClosed(goroutines, chunk.lines[at]);
+                        stack[sp - 1] = source.valueOf(received);
+                        push(received != Channel.CLOSED);
+                        break;
+                    }
+                    case OpCode.MAKE_CHANNEL:
+                        stack[sp - 1] = new Channel((int) Interpreter.size(stack[sp - 1], chunk.lines[at]),
+                                Slice.zero(code[ip++]));
+                        break;
+                    case OpCode.MAKE_SLICE: {
+                        Object capacity = stack[--sp];
+                        stack[sp - 1] = Slice.make(code[ip++], stack[sp - 1], capacity, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.GET_INDEX: {
+                        Object index = stack[--sp];
+                        stack[sp - 1] = Interpreter.index(stack[sp - 1], index, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.SET_INDEX: {
+                        Object value = stack[--sp];
+                        Object index = stack[--sp];
+                        Interpreter.setIndex(stack[sp - 1], index, value, chunk.lines[at]);
+                        stack[sp - 1] = value;
+                        break;
+                    }
+                    case OpCode.SLICE: {
+                        int bounds = code[ip++];
+                        Object high = (bounds & 2) != 0 ? stack[--sp] : null;
+                        Object low = (bounds & 1) != 0 ? stack[--sp] : null;
+                        stack[sp - 1] = Slice.cast(stack[sp - 1], chunk.lines[at]).slice(low, high, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.SLICE_LITERAL: {
+                        int kind = code[ip];
+                        int count = readShort(code, ip + 1);
+                        ip += 3;
+                        Object[] elements = Arrays.copyOfRange(stack, sp - count, sp);
+                        sp -= count;
+                        stack[sp - 1] = Slice.of(kind, (long) stack[sp - 1], elements, chunk.lines[at]);
+                        break;
+                    }
+                    case OpCode.MAP_LITERAL: {
+                        GoMap type = (GoMap) constants[readShort(code, ip)];
+                        int count = readShort(code, ip + 2);
+                        ip += 4;
+                        int entries = sp - 2 * count;
+                        Object size = stack[entries - 1];
+                        GoMap map = GoMap.make(type, size == null ? Arithmetic.box(count) : size, chunk.lines[at]);
+                        for (int i = entries; i < sp; i += 2) {
+                            map.put(stack[i], stack[i + 1], chunk.lines[at]);
+                        }
+                        sp = entries;
+                        stack[sp - 1] = map;
+                        break;
+                    }
+                    case OpCode.LOOKUP: {
+                        Object key = stack[sp - 1];
+                        GoMap map = GoMap.cast(stack[sp - 2], chunk.lines[at]);
+                        int found = map.find(key, chunk.lines[at]);
+                        stack[sp - 2] = found < 0 ? map.zero : map.valueAt(found);
+                        stack[sp - 1] = found >= 0;
+                        break;
+                    }
+                    case OpCode.RANGE:
+                        stack[sp - 1] = RangeIterator.of(stack[sp - 1], goroutines, chunk.lines[at]);
+                        break;
+                    case OpCode.NEXT: {
+                        RangeIterator iterator = (RangeIterator) stack[sp - 1];
+                        if (iterator.next()) {
+                            push(iterator.key);
+                            push(iterator.value);
+                            ip += 2;
+                        } else {
+                            ip += 2 + readShort(code, ip);
+                        }
+                        break;
+                    }
+                    case OpCode.SELECT: {
+                        int count = code[ip] & 0xff;
+                        int table = ip + 1;
+                        ip = table + count * 3;
+                        Channel[] channels = new Channel[count];
+                        Object[] values = new Object[count];
+                        int defaultCase = -1;
+                        // the cases pushed their operands in order, so they come off the stack last case first
+                        for (int i = count - 1; i >= 0; i--) {
+                            byte kind = code[table + i * 3];
+                            if (kind == OpCode.SELECT_DEFAULT) {
+                                defaultCase = i;
+                                continue;
+                            }
+                            values[i] = kind == OpCode.SELECT_SEND ? stack[--sp] : Channel.RECEIVE;
+                            Object channel = stack[--sp];
+                            if (channel != null) channels[i] = channel(channel, chunk.lines[at]);
+                        }
+                        int index = Channel.select(channels, values, defaultCase >= 0, goroutines, chunk.lines[at]);
+                        Object received = index < 0 ? null : values[index];
+                        push(index < 0 ? null : channels[index].valueOf(received));
+                        push(received != Channel.CLOSED);
+                        if (index < 0) index = defaultCase;
+                        ip += readShort(code, table + index * 3 + 1);
+                        break;
+                    }
+                    case OpCode.CLOSURE: {
+                        Chunk body = (Chunk) constants[readShort(code, ip)];
+                        ip += 2;
+                        push(new Closure(body, environment));
+                        break;
+                    }
+                    case OpCode.INHERIT: {
+                        Object superclass = stack[--sp];
+                        if (!(superclass instanceof Class)) {
+                            throw new RuntimeError(chunk.lines[at], "Superclass must be a class.");
+                        }
+                        environment = new Environment(environment, 1);
+                        environment.slots[0] = superclass;
+                        break;
+                    }
+                    case OpCode.CLASS: {
+                        String name = (String) constants[readShort(code, ip)];
+                        int methodCount = readShort(code, ip + 2);
+                        boolean hasSuperclass = code[ip + 4] != 0;
+                        ip += 5;
+                        Map<String, Function> methods = new HashMap<>();
+                        for (int i = sp - methodCount; i < sp; i++) {
+                            Closure method = (Closure) stack[i];
+                            methods.put(method.declaration.name.lexeme, method);
+                        }
+                        sp -= methodCount;
+                        Class superclass = null;
+                        if (hasSuperclass) {
+                            superclass = (Class) environment.slots[0];
+                            environment = environment.enclosing;
+                        }
+                        push(new Class(name, superclass, methods));
+                        break;
+                    }
+                    case OpCode.RETURN: {
+                        Object result = stack[--sp];
+                        frameCount--;
+                        // a return from inside a range loop leaves the loop's iterator behind on the stack
+                        sp = frame.base;
+                        frame.environment = null;
+                        // an initializer called through its class returns the new instance
+                        if (frame.instance != null) result = frame.instance;
+                        if (frameCount == depth) return result;
+                        // the result replaces the callee on the caller's stack
+                        stack[sp - 1] = result;
+                        continue frames;
+                    }
+                    case OpCode.PUSH_SCOPE:
+                        environment = new Environment(environment, readShort(code, ip));
+                        ip += 2;
+                        break;
+                    case OpCode.POP_SCOPE:
+                        environment = environment.enclosing;
+                        break;
+                    default:
+                        throw new RuntimeError(chunk.lines[at], "Unknown instruction " + code[at] + ".");
+                }
+            }
+        }
+    }
+
+    // calls callee with the argCount values above it on the stack: a closure, or a class with an initializer,
+    // gets a frame for the caller to run and true is returned, anything else is called at once and its result
+    // replaces the callee on the stack
+    private boolean callValue(Object callee, int argCount, int line) {
+        if (callee instanceof Closure) {
+            Closure closure = (Closure) callee;
+            checkArity(closure.arity(), argCount, line);
+            pushFrame(closure, closure.receiver, argCount, null, line);
+            return true;
+        }
+        if (callee instanceof Class) {
+            Class klass = (Class) callee;
+            checkArity(klass.arity(), argCount, line);
+            Instance instance = new Instance(klass);
+            Function initializer = klass.findMethod("init");
+            if (initializer != null) {
+                pushFrame((Closure) initializer, instance, argCount, instance, line);
+                return true;
+            }
+            sp -= argCount;
+            stack[sp - 1] = instance;
+            return false;
+        }
+        if (callee instanceof Builtin) {
+            Builtin builtin = (Builtin) callee;
+            checkArity(builtin.arity(), argCount, line);
+            List<Object> arguments = Arrays.asList(Arrays.copyOfRange(stack, sp - argCount, sp));
+            sp -= argCount;
+            stack[sp - 1] = builtin.call(arguments, line);
+            return false;
+        }
+        throw new RuntimeError(line, "Can only call functions and classes.");
+    }
+
+    private static Channel channel(Object value, int line) {
+        if (!(value instanceof Channel)) {
+            throw new RuntimeError(line, "Operand must be a channel.");
+        }
+        return (Channel) value;
+    }
+
+    // a field is called like any other value, a method is invoked with the instance as its receiver
+    private boolean invokeMethod(Instance instance, String name, int argCount, int line) {
+        Function method = instance.method(name);
+        if (method == null) {
+            return callValue(instance.get(name, line), argCount, line);
+        }
+        checkArity(method.arity(), argCount, line);
+        pushFrame((Closure) method, instance, argCount, null, line);
+        return true;
+    }
+
+    private void checkArity(int arity, int argCount, int line) {
+        if (arity != Builtin.VARIADIC && argCount != arity) {
+            throw new RuntimeError(line, "Expected " + arity + " arguments but got " + argCount + ".");
+        }
+    }
+
+    private void push(Object value) {
+        if (sp == stack.length) {
+            stack = Arrays.copyOf(stack, sp * 2);
+        }
+        stack[sp++] = value;
+    }
+
+    private static int readShort(byte[] code, int ip) {
+        return ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+    }
+}